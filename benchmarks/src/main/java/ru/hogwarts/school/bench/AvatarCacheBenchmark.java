@@ -0,0 +1,72 @@
+package ru.hogwarts.school.bench;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.util.unit.DataSize;
+import ru.hogwarts.school.cache.AvatarCache;
+import ru.hogwarts.school.cache.AvatarKey;
+import ru.hogwarts.school.cache.OffHeapAvatarCache;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Чтение аватара из кэша в куче и из кэша вне кучи. Паузы GC при заполненном кеше сравнивает {@link AvatarCacheGcBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class AvatarCacheBenchmark {
+
+    private static final int ENTRIES = 128;
+
+    @Param({"16384", "262144"})
+    public int avatarSize;
+
+    private AvatarCache heapCache;
+    private OffHeapAvatarCache offHeapCache;
+    private AvatarKey[] keys;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        long capacity = 2L * ENTRIES * avatarSize;
+        heapCache = new AvatarCache(DataSize.ofBytes(capacity), DataSize.ofBytes(avatarSize), DataSize.ofBytes(0), DataSize.ofKilobytes(16));
+        offHeapCache = new OffHeapAvatarCache(capacity, 16 * 1024);
+        keys = new AvatarKey[ENTRIES];
+        Random random = new Random(42);
+        for (int i = 0; i < ENTRIES; i++) {
+            byte[] data = new byte[avatarSize];
+            random.nextBytes(data);
+            keys[i] = AvatarKey.original("%064x".formatted(i));
+            heapCache.put(keys[i], "image/png", data);
+            offHeapCache.put(keys[i], "image/png", data);
+        }
+    }
+
+    @Benchmark
+    public long heapGet() throws IOException {
+        return read(heapCache.get(nextKey()).orElseThrow());
+    }
+
+    @Benchmark
+    public long offHeapGet() throws IOException {
+        return read(offHeapCache.get(nextKey()).orElseThrow());
+    }
+
+    private AvatarKey nextKey() {
+        next = (next + 1) % ENTRIES;
+        return keys[next];
+    }
+
+    private static long read(AvatarCache.CachedAvatar avatar) throws IOException {
+        try (InputStream in = avatar.resource().getInputStream()) {
+            return in.transferTo(OutputStream.nullOutputStream());
+        }
+    }
+}
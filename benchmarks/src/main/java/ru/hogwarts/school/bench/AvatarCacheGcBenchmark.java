@@ -0,0 +1,117 @@
+package ru.hogwarts.school.bench;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.util.unit.DataSize;
+import ru.hogwarts.school.cache.AvatarCache;
+import ru.hogwarts.school.cache.AvatarKey;
+import ru.hogwarts.school.cache.OffHeapAvatarCache;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Паузы GC при одинаковом объёме закешированных аватаров в куче и вне кучи. Поток читает случайные
+ * аватары и заменяет каждый десятый — как кеш под постоянной сменой содержимого. Кроме времени операции
+ * отчёт содержит gcPauseMs и gcCount за итерацию (сборщики без «Concurrent» в имени — то есть паузы STW).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g", "-XX:+UseG1GC", "-XX:MaxDirectMemorySize=1g"})
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class AvatarCacheGcBenchmark {
+
+    public enum Tier {HEAP, OFF_HEAP}
+
+    @Param({"HEAP", "OFF_HEAP"})
+    public Tier tier;
+
+    @Param({"512"})
+    public int residentMb;
+
+    @Param({"65536"})
+    public int avatarSize;
+
+    private AvatarCache heapCache;
+    private OffHeapAvatarCache offHeapCache;
+    private AvatarKey[] keys;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        long capacity = DataSize.ofMegabytes(residentMb).toBytes();
+        int entries = (int) (capacity / avatarSize);
+        if (tier == Tier.HEAP) {
+            heapCache = new AvatarCache(DataSize.ofBytes(capacity), DataSize.ofBytes(avatarSize), DataSize.ofBytes(0), DataSize.ofKilobytes(16));
+        } else {
+            offHeapCache = new OffHeapAvatarCache(capacity, 16 * 1024);
+        }
+        keys = new AvatarKey[entries];
+        for (int i = 0; i < entries; i++) {
+            keys[i] = AvatarKey.original("%064x".formatted(i));
+            put(keys[i], avatar(i));
+        }
+    }
+
+    @Benchmark
+    public long readAndReplace(GcPauses pauses) throws IOException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int index = random.nextInt(keys.length);
+        if (random.nextInt(10) == 0) {
+            put(keys[index], avatar(index));
+            return 0;
+        }
+        AvatarCache.CachedAvatar cached = (tier == Tier.HEAP ? heapCache.get(keys[index]) : offHeapCache.get(keys[index])).orElseThrow();
+        try (InputStream in = cached.resource().getInputStream()) {
+            return in.transferTo(OutputStream.nullOutputStream());
+        }
+    }
+
+    private void put(AvatarKey key, byte[] data) {
+        if (tier == Tier.HEAP) {
+            heapCache.put(key, "image/png", data);
+        } else {
+            offHeapCache.put(key, "image/png", data);
+        }
+    }
+
+    private byte[] avatar(int seed) {
+        byte[] data = new byte[avatarSize];
+        data[0] = (byte) seed;
+        return data;
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class GcPauses {
+
+        public long gcPauseMs;
+        public long gcCount;
+
+        private final List<GarbageCollectorMXBean> collectors = ManagementFactory.getGarbageCollectorMXBeans().stream()
+                .filter(collector -> !collector.getName().contains("Concurrent"))
+                .toList();
+        private long startTime;
+        private long startCount;
+
+        @Setup(Level.Iteration)
+        public void start() {
+            gcPauseMs = 0;
+            gcCount = 0;
+            startTime = collectors.stream().mapToLong(GarbageCollectorMXBean::getCollectionTime).sum();
+            startCount = collectors.stream().mapToLong(GarbageCollectorMXBean::getCollectionCount).sum();
+        }
+
+        @TearDown(Level.Iteration)
+        public void stop() {
+            gcPauseMs = collectors.stream().mapToLong(GarbageCollectorMXBean::getCollectionTime).sum() - startTime;
+            gcCount = collectors.stream().mapToLong(GarbageCollectorMXBean::getCollectionCount).sum() - startCount;
+        }
+    }
+}
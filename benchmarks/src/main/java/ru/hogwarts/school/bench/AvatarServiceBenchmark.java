@@ -0,0 +1,101 @@
+package ru.hogwarts.school.bench;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.mock.web.MockMultipartFile;
+import ru.hogwarts.school.model.Avatar;
+import ru.hogwarts.school.model.Student;
+import ru.hogwarts.school.repository.StudentRepository;
+import ru.hogwarts.school.service.AvatarService;
+import ru.hogwarts.school.store.FileAvatarStore;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Загрузка и чтение аватаров на реальных файлах. {@code downloadResource} и {@code downloadReadAllBytes}
+ * читают файл хранилища напрямую, мимо кэша, а {@code loadAvatar} — через AvatarService, то есть из кэша.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class AvatarServiceBenchmark {
+
+    @Param({"16384", "262144"})
+    public int avatarSize;
+
+    private Path avatarDir;
+    private ConfigurableApplicationContext context;
+    private AvatarService avatarService;
+    private FileAvatarStore fileAvatarStore;
+    private Long studentId;
+    private byte[] content;
+    private String contentHash;
+    private long uploads;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        avatarDir = Files.createTempDirectory("bench-avatars");
+        context = BenchmarkApplication.start(avatarDir);
+        avatarService = context.getBean(AvatarService.class);
+        fileAvatarStore = context.getBean(FileAvatarStore.class);
+        studentId = context.getBean(StudentRepository.class).save(new Student("Harry Potter", 11)).getId();
+
+        content = new byte[avatarSize];
+        new Random(42).nextBytes(content);
+        contentHash = avatarService.uploadAvatar(studentId, file(content)).getContentHash();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        context.close();
+        BenchmarkApplication.deleteRecursively(avatarDir);
+    }
+
+    // Каждая загрузка с новым содержимым, иначе дедупликация по хешу пропустит запись файла
+    @Benchmark
+    public Avatar uploadAvatar() throws IOException {
+        byte[] data = content.clone();
+        long counter = ++uploads;
+        for (int i = 0; i < Long.BYTES; i++) {
+            data[i] = (byte) (counter >>> (i * 8));
+        }
+        return avatarService.uploadAvatar(studentId, file(data));
+    }
+
+    @Benchmark
+    public Avatar findAvatar() {
+        return avatarService.findAvatar(studentId);
+    }
+
+    @Benchmark
+    public long loadAvatar() throws IOException {
+        try (InputStream in = avatarService.loadAvatar(studentId).orElseThrow().resource().getInputStream()) {
+            return in.transferTo(OutputStream.nullOutputStream());
+        }
+    }
+
+    @Benchmark
+    public long downloadResource() throws IOException {
+        try (InputStream in = fileAvatarStore.load(contentHash).orElseThrow().getInputStream()) {
+            return in.transferTo(OutputStream.nullOutputStream());
+        }
+    }
+
+    @Benchmark
+    public byte[] downloadReadAllBytes() throws IOException {
+        return Files.readAllBytes(Path.of(fileAvatarStore.location(contentHash)));
+    }
+
+    private static MockMultipartFile file(byte[] data) {
+        return new MockMultipartFile("file", "avatar.png", "image/png", data);
+    }
+}
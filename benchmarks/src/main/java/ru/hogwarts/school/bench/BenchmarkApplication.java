@@ -0,0 +1,76 @@
+package ru.hogwarts.school.bench;
+
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import ru.hogwarts.school.SchoolApplication;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/**
+ * Поднимает приложение без веб-сервера поверх H2 в режиме совместимости с PostgreSQL.
+ * Миграции Flyway рассчитаны на PostgreSQL (последовательности, pg_trgm), поэтому схема создаётся Hibernate.
+ * Кэш второго уровня выключен, чтобы запросы к репозиториям действительно доходили до базы.
+ * Advisory-блокировки PostgreSQL заменены пустой функцией: бенчмарки работают в одном потоке.
+ * В режиме PostgreSQL H2 не знает тип BLOB из DDL для avatar_content, поэтому он объявлен доменом.
+ */
+final class BenchmarkApplication {
+
+    private BenchmarkApplication() {
+    }
+
+    static ConfigurableApplicationContext start(Path avatarDir) {
+        return start(WebApplicationType.NONE, avatarDir);
+    }
+
+    // Дополнительные аргументы переопределяют общие: Spring берёт последнее значение свойства
+    static ConfigurableApplicationContext start(WebApplicationType type, Path avatarDir, String... overrides) {
+        Stream<String> common = Stream.of(
+                "--spring.datasource.url=jdbc:h2:mem:bench;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DEFAULT_NULL_ORDERING=HIGH;DB_CLOSE_DELAY=-1"
+                        + ";INIT=CREATE ALIAS IF NOT EXISTS pg_advisory_xact_lock FOR '" + H2Functions.class.getName() + ".advisoryLock'"
+                        + "\\;CREATE DOMAIN IF NOT EXISTS blob AS BINARY LARGE OBJECT",
+                "--spring.datasource.username=sa",
+                "--spring.datasource.password=",
+                "--spring.jpa.properties.hibernate.dialect=",
+                "--spring.jpa.hibernate.ddl-auto=create-drop",
+                "--spring.jpa.show-sql=false",
+                "--spring.flyway.enabled=false",
+                "--spring.jpa.properties.hibernate.cache.use_second_level_cache=false",
+                "--spring.jpa.properties.hibernate.cache.use_query_cache=false",
+                "--spring.jpa.properties.hibernate.generate_statistics=false",
+                "--app.avatar.store=file",
+                "--app.avatar.dir=" + avatarDir,
+                "--app.avatar.variants.sizes=",
+                "--app.response-cache.enabled=false",
+                "--logging.level.root=WARN");
+        String[] args = Stream.concat(common, Stream.of(overrides)).toArray(String[]::new);
+        return new SpringApplicationBuilder(SchoolApplication.class)
+                .web(type)
+                .logStartupInfo(false)
+                .run(args);
+    }
+
+    static void deleteRecursively(Path dir) throws IOException {
+        if (!Files.exists(dir)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(dir)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    public static final class H2Functions {
+
+        private H2Functions() {
+        }
+
+        public static void advisoryLock(long key) {
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package ru.hogwarts.school.bench;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import ru.hogwarts.school.dto.AvatarInfo;
+import ru.hogwarts.school.dto.CursorPage;
+import ru.hogwarts.school.model.Avatar;
+import ru.hogwarts.school.model.Faculty;
+import ru.hogwarts.school.model.Student;
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class JsonSerializationBenchmark {
+
+    private final ObjectMapper mapper = JsonMapper.builder().build();
+    private Student student;
+    private Faculty faculty;
+    private Page<Avatar> avatarPage;
+    private CursorPage<AvatarInfo> avatarInfoPage;
+
+    @Setup
+    public void setUp() {
+        faculty = new Faculty("Gryffindor", "Scarlet");
+        faculty.setId(1L);
+        List<Student> students = new ArrayList<>();
+        for (long id = 1; id <= 30; id++) {
+            Student member = new Student("Student " + id, 11 + (int) (id % 7));
+            member.setId(id);
+            member.setFaculty(faculty);
+            students.add(member);
+        }
+        faculty.setStudents(students);
+        student = students.get(0);
+
+        List<Avatar> avatars = new ArrayList<>();
+        List<AvatarInfo> infos = new ArrayList<>();
+        for (long id = 1; id <= 50; id++) {
+            Avatar avatar = new Avatar("uploads/avatars/ab/cd/" + id, 20_000 + id, "image/png");
+            avatar.setContentHash(Long.toHexString(id * 0x9E3779B97F4A7C15L));
+            avatars.add(avatar);
+            infos.add(new AvatarInfo(id, id, "image/png", 20_000 + id));
+        }
+        avatarPage = new PageImpl<>(avatars, PageRequest.of(0, 50), 1_000);
+        avatarInfoPage = new CursorPage<>(infos, CursorPage.encode(50));
+    }
+
+    @Benchmark
+    public byte[] student() {
+        return mapper.writeValueAsBytes(student);
+    }
+
+    @Benchmark
+    public byte[] facultyWithStudents() {
+        return mapper.writeValueAsBytes(faculty);
+    }
+
+    @Benchmark
+    public byte[] avatarPage() {
+        return mapper.writeValueAsBytes(avatarPage);
+    }
+
+    // Для сравнения: то, что сейчас отдаёт GET /avatars
+    @Benchmark
+    public byte[] avatarInfoCursorPage() {
+        return mapper.writeValueAsBytes(avatarInfoPage);
+    }
+}
@@ -0,0 +1,164 @@
+package ru.hogwarts.school.bench;
+
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.web.server.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import ru.hogwarts.school.model.Faculty;
+import ru.hogwarts.school.model.Student;
+import ru.hogwarts.school.repository.FacultyRepository;
+import ru.hogwarts.school.repository.StudentRepository;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Нагрузочный тест HTTP-слоя: приложение поверх H2 с Tomcat на случайном порту и {@code clients}
+ * клиентов, каждый из которых без пауз шлёт GET-запросы (закрытая модель). Смесь запросов:
+ * 70% — студент по id, 20% — страница студентов, 10% — студенты факультета.
+ * <p>
+ * Аргументы — пары {@code ключ=значение}: {@code clients} (2000), {@code warmup} (10s), {@code duration} (30s),
+ * {@code students} (2000), {@code virtual} (значение {@code spring.threads.virtual.enabled}). Остальные пары,
+ * начинающиеся с {@code --}, передаются приложению как свойства, например {@code --spring.datasource.hikari.maximum-pool-size=50}.
+ * Печатаются пропускная способность, p50/p90/p99/max и число ошибок, включая ответы не 2xx.
+ */
+public final class LoadTest {
+
+    private static final int FACULTIES = 20;
+
+    private LoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>(Map.of("clients", "2000", "warmup", "10s", "duration", "30s",
+                "students", "2000", "virtual", "true"));
+        List<String> overrides = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.startsWith("--")) {
+                overrides.add(arg);
+            } else {
+                String[] pair = arg.split("=", 2);
+                options.put(pair[0], pair[1]);
+            }
+        }
+        overrides.add("--spring.threads.virtual.enabled=" + options.get("virtual"));
+        overrides.add("--server.port=0");
+        int clients = Integer.parseInt(options.get("clients"));
+        Duration warmup = Duration.parse("PT" + options.get("warmup"));
+        Duration duration = Duration.parse("PT" + options.get("duration"));
+        int students = Integer.parseInt(options.get("students"));
+
+        Path avatarDir = Files.createTempDirectory("load-avatars");
+        try (ConfigurableApplicationContext context = BenchmarkApplication.start(WebApplicationType.SERVLET, avatarDir,
+                overrides.toArray(String[]::new))) {
+            long[][] ids = seed(context, students);
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            System.out.printf("virtual=%s clients=%d warmup=%s duration=%s students=%d %s%n",
+                    options.get("virtual"), clients, warmup, duration, students, overrides);
+            run(port, ids, clients, warmup, false);
+            run(port, ids, clients, duration, true);
+        } finally {
+            BenchmarkApplication.deleteRecursively(avatarDir);
+        }
+    }
+
+    // ids[0] — студенты, ids[1] — факультеты
+    private static long[][] seed(ConfigurableApplicationContext context, int students) {
+        FacultyRepository facultyRepository = context.getBean(FacultyRepository.class);
+        StudentRepository studentRepository = context.getBean(StudentRepository.class);
+        List<Faculty> faculties = new ArrayList<>();
+        for (int i = 0; i < FACULTIES; i++) {
+            faculties.add(facultyRepository.save(new Faculty("Faculty " + i, "Color " + i)));
+        }
+        List<Student> batch = new ArrayList<>();
+        for (int i = 0; i < students; i++) {
+            Student student = new Student("Student " + i, 11 + i % 10);
+            student.setFaculty(faculties.get(i % FACULTIES));
+            batch.add(student);
+        }
+        long[] studentIds = studentRepository.saveAll(batch).stream().mapToLong(Student::getId).toArray();
+        long[] facultyIds = faculties.stream().mapToLong(Faculty::getId).toArray();
+        return new long[][]{studentIds, facultyIds};
+    }
+
+    private static void run(int port, long[][] ids, int clients, Duration duration, boolean report) throws InterruptedException {
+        String base = "http://localhost:" + port;
+        long deadline = System.nanoTime() + duration.toNanos();
+        List<long[]> latencies = new ArrayList<>();
+        AtomicLong errors = new AtomicLong();
+        try (HttpClient http = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(10))
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .build();
+             ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<long[]>> futures = new ArrayList<>();
+            for (int i = 0; i < clients; i++) {
+                futures.add(executor.submit(() -> client(http, base, ids, deadline, errors)));
+            }
+            for (Future<long[]> future : futures) {
+                try {
+                    latencies.add(future.get());
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException(e.getCause());
+                }
+            }
+        }
+        if (!report) {
+            return;
+        }
+        long[] all = latencies.stream().flatMapToLong(Arrays::stream).sorted().toArray();
+        System.out.printf("requests=%d throughput=%.0f req/s errors=%d p50=%.1fms p90=%.1fms p99=%.1fms max=%.1fms%n",
+                all.length, all.length / (duration.toMillis() / 1000.0), errors.get(),
+                percentile(all, 0.50), percentile(all, 0.90), percentile(all, 0.99), all.length == 0 ? 0 : all[all.length - 1] / 1e6);
+    }
+
+    private static long[] client(HttpClient http, String base, long[][] ids, long deadline, AtomicLong errors) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long[] latencies = new long[1024];
+        int count = 0;
+        while (System.nanoTime() < deadline) {
+            int kind = random.nextInt(10);
+            String path = kind < 7 ? "/students/" + ids[0][random.nextInt(ids[0].length)]
+                    : kind < 9 ? "/students?limit=50"
+                    : "/faculties/" + ids[1][random.nextInt(ids[1].length)] + "/students";
+            HttpRequest request = HttpRequest.newBuilder(URI.create(base + path)).timeout(Duration.ofSeconds(30)).GET().build();
+            long start = System.nanoTime();
+            try {
+                HttpResponse<Void> response = http.send(request, HttpResponse.BodyHandlers.discarding());
+                if (response.statusCode() / 100 != 2) {
+                    errors.incrementAndGet();
+                }
+            } catch (Exception e) {
+                errors.incrementAndGet();
+            }
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = System.nanoTime() - start;
+        }
+        return Arrays.copyOf(latencies, count);
+    }
+
+    private static double percentile(long[] sorted, double quantile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        return sorted[(int) Math.min(sorted.length - 1, Math.ceil(quantile * sorted.length) - 1)] / 1e6;
+    }
+}
@@ -0,0 +1,87 @@
+package ru.hogwarts.school.bench;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import ru.hogwarts.school.model.Faculty;
+import ru.hogwarts.school.model.Student;
+import ru.hogwarts.school.repository.FacultyRepository;
+import ru.hogwarts.school.repository.StudentRepository;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class RepositoryBenchmark {
+
+    private static final int FACULTIES = 4;
+
+    @Param({"10000"})
+    public int students;
+
+    private Path avatarDir;
+    private ConfigurableApplicationContext context;
+    private StudentRepository studentRepository;
+    private Long facultyId;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        avatarDir = Files.createTempDirectory("bench-avatars");
+        context = BenchmarkApplication.start(avatarDir);
+        studentRepository = context.getBean(StudentRepository.class);
+        FacultyRepository facultyRepository = context.getBean(FacultyRepository.class);
+
+        List<Faculty> faculties = new ArrayList<>();
+        for (int i = 0; i < FACULTIES; i++) {
+            faculties.add(facultyRepository.save(new Faculty("Faculty " + i, "Color " + i)));
+        }
+        facultyId = faculties.get(0).getId();
+
+        List<Student> batch = new ArrayList<>();
+        for (int i = 0; i < students; i++) {
+            Student student = new Student("Student " + i, 11 + i % 10);
+            student.setFaculty(faculties.get(i % FACULTIES));
+            batch.add(student);
+            if (batch.size() == 1_000) {
+                studentRepository.saveAll(batch);
+                batch.clear();
+            }
+        }
+        studentRepository.saveAll(batch);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        context.close();
+        BenchmarkApplication.deleteRecursively(avatarDir);
+    }
+
+    // Около 30% таблицы
+    @Benchmark
+    public List<Student> findByAgeBetween() {
+        return studentRepository.findByAgeBetween(15, 17);
+    }
+
+    @Benchmark
+    public List<Student> findByFacultyId() {
+        return studentRepository.findByFacultyId(facultyId);
+    }
+
+    @Benchmark
+    public Long countAllStudents() {
+        return studentRepository.countAllStudents();
+    }
+
+    @Benchmark
+    public Double averageAge() {
+        return studentRepository.getAverageAge();
+    }
+}
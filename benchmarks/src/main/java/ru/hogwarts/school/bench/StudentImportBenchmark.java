@@ -0,0 +1,80 @@
+package ru.hogwarts.school.bench;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import ru.hogwarts.school.dto.ImportReport;
+import ru.hogwarts.school.model.Student;
+import ru.hogwarts.school.repository.StudentRepository;
+import ru.hogwarts.school.service.StudentImportService;
+import ru.hogwarts.school.service.StudentService;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Пакетный импорт против вставки по одному студенту. Результат — строк в секунду.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class StudentImportBenchmark {
+
+    private static final int ROWS = 1_000;
+
+    private Path avatarDir;
+    private ConfigurableApplicationContext context;
+    private StudentService studentService;
+    private StudentImportService studentImportService;
+    private StudentRepository studentRepository;
+    private byte[] csv;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        avatarDir = Files.createTempDirectory("bench-avatars");
+        context = BenchmarkApplication.start(avatarDir);
+        studentService = context.getBean(StudentService.class);
+        studentImportService = context.getBean(StudentImportService.class);
+        studentRepository = context.getBean(StudentRepository.class);
+
+        StringBuilder builder = new StringBuilder("name,age\n");
+        for (int i = 0; i < ROWS; i++) {
+            builder.append("Student ").append(i).append(',').append(11 + i % 10).append('\n');
+        }
+        csv = builder.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    // Таблица очищается между итерациями, чтобы её рост не искажал замеры
+    @TearDown(Level.Iteration)
+    public void truncate() {
+        studentRepository.deleteAllInBatch();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        context.close();
+        BenchmarkApplication.deleteRecursively(avatarDir);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public ImportReport importCsv() throws IOException {
+        return studentImportService.importCsv(new ByteArrayInputStream(csv));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public Student addStudentOneByOne() {
+        Student last = null;
+        for (int i = 0; i < ROWS; i++) {
+            last = studentService.addStudent(new Student("Student " + i, 11 + i % 10));
+        }
+        return last;
+    }
+}
@@ -0,0 +1,117 @@
+package ru.hogwarts.school.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.util.Optional;
+
+@Component
+public class AvatarCache implements MeterBinder {
+
+    private final Cache<AvatarKey, HeapAvatar> cache;
+    private final OffHeapAvatarCache offHeapCache;
+    private final long maxEntryBytes;
+
+    public AvatarCache(@Value("${app.avatar.cache.max-size:64MB}") DataSize maxSize,
+                       @Value("${app.avatar.cache.max-entry-size:1MB}") DataSize maxEntrySize,
+                       @Value("${app.avatar.cache.off-heap-size:0}") DataSize offHeapSize,
+                       @Value("${app.avatar.cache.off-heap-block-size:16KB}") DataSize offHeapBlockSize) {
+        this.maxEntryBytes = maxEntrySize.toBytes();
+        this.offHeapCache = offHeapSize.toBytes() > 0 ? new OffHeapAvatarCache(offHeapSize.toBytes(), (int) offHeapBlockSize.toBytes()) : null;
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxSize.toBytes())
+                .weigher((AvatarKey key, HeapAvatar avatar) -> avatar.data().length)
+                .evictionListener((AvatarKey key, HeapAvatar avatar, RemovalCause cause) -> demote(key, avatar, cause))
+                .recordStats()
+                .build();
+    }
+
+    public Optional<CachedAvatar> get(AvatarKey key) {
+        HeapAvatar avatar = cache.getIfPresent(key);
+        if (avatar != null) {
+            return Optional.of(new CachedAvatar(avatar.mediaType(), new ByteArrayResource(avatar.data())));
+        }
+        return offHeapCache != null ? offHeapCache.get(key) : Optional.empty();
+    }
+
+    public boolean accepts(long size) {
+        return size <= maxEntryBytes;
+    }
+
+    public void put(AvatarKey key, String mediaType, byte[] data) {
+        if (accepts(data.length)) {
+            cache.put(key, new HeapAvatar(mediaType, data));
+        }
+    }
+
+    public void invalidate(AvatarKey key) {
+        cache.invalidate(key);
+        if (offHeapCache != null) {
+            offHeapCache.invalidate(key);
+        }
+    }
+
+    public long residentBytes() {
+        return cache.policy().eviction().map(eviction -> eviction.weightedSize().orElse(0L)).orElse(0L);
+    }
+
+    // Вытеснение идёт асинхронно; тестам нужно дождаться его явно
+    void cleanUp() {
+        cache.cleanUp();
+    }
+
+    // Вытесненные из кучи аватары переезжают во второй уровень вне кучи
+    private void demote(AvatarKey key, HeapAvatar avatar, RemovalCause cause) {
+        if (offHeapCache != null && cause == RemovalCause.SIZE && key != null && avatar != null) {
+            offHeapCache.put(key, avatar.mediaType(), avatar.data());
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, cache, "avatars");
+        Gauge.builder("avatar.cache.resident", this, AvatarCache::residentBytes)
+                .baseUnit("bytes")
+                .description("Суммарный размер аватаров в кеше")
+                .register(registry);
+        if (offHeapCache == null) {
+            return;
+        }
+        Gauge.builder("avatar.cache.off-heap.resident", offHeapCache, OffHeapAvatarCache::residentBytes)
+                .baseUnit("bytes")
+                .description("Суммарный размер аватаров в кеше вне кучи")
+                .register(registry);
+        Gauge.builder("avatar.cache.off-heap.used", offHeapCache, OffHeapAvatarCache::usedBytes)
+                .baseUnit("bytes")
+                .description("Занятые блоки кеша вне кучи")
+                .register(registry);
+        Gauge.builder("avatar.cache.off-heap.capacity", offHeapCache, OffHeapAvatarCache::capacity)
+                .baseUnit("bytes")
+                .register(registry);
+        FunctionCounter.builder("avatar.cache.off-heap.gets", offHeapCache, OffHeapAvatarCache::hitCount)
+                .tag("result", "hit")
+                .register(registry);
+        FunctionCounter.builder("avatar.cache.off-heap.gets", offHeapCache, OffHeapAvatarCache::missCount)
+                .tag("result", "miss")
+                .register(registry);
+        FunctionCounter.builder("avatar.cache.off-heap.evictions", offHeapCache, OffHeapAvatarCache::evictionCount)
+                .register(registry);
+    }
+
+    private record HeapAvatar(String mediaType, byte[] data) {
+    }
+
+    public record CachedAvatar(String mediaType, Resource resource) {
+    }
+}
@@ -0,0 +1,12 @@
+package ru.hogwarts.school.cache;
+
+/**
+ * Ключ кеша — хеш содержимого и размер превью: байты под ключом никогда не меняются,
+ * поэтому при замене аватара кеш не нужно сбрасывать.
+ */
+public record AvatarKey(String contentHash, int size) {
+
+    public static AvatarKey original(String contentHash) {
+        return new AvatarKey(contentHash, 0);
+    }
+}
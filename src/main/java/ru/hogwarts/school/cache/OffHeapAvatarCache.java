@@ -0,0 +1,337 @@
+package ru.hogwarts.school.cache;
+
+import jakarta.servlet.ServletOutputStream;
+import org.springframework.core.io.AbstractResource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.ref.Cleaner;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Кеш аватаров вне кучи: одна область прямой памяти, разбитая на блоки фиксированного размера.
+ * Запись занимает столько блоков, сколько нужно под её байты; вытеснение — LRU.
+ * Каждый выданный Resource и каждый открытый по нему поток держат ссылку на блоки записи: блоки вытесненной
+ * записи возвращаются в пул, когда закрыт последний поток. Cleaner освобождает ссылку Resource, который так и не прочитали.
+ * <p>
+ * Память — прямой {@link ByteBuffer}: MemorySegment/Arena в Java 21 ещё preview и требуют {@code --enable-preview}.
+ * При отдаче в {@link ServletOutputStream} блоки пишутся как ByteBuffer, без копии в кучу.
+ */
+public class OffHeapAvatarCache {
+
+    private static final Cleaner CLEANER = Cleaner.create();
+
+    private final ByteBuffer region;
+    private final int blockSize;
+    private final int[] freeBlocks;
+    private int freeCount;
+    private long residentBytes;
+
+    private final Map<AvatarKey, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public OffHeapAvatarCache(long capacity, int blockSize) {
+        if (blockSize <= 0) {
+            throw new IllegalArgumentException("Размер блока должен быть больше нуля");
+        }
+        int blocks = (int) Math.min(capacity / blockSize, Integer.MAX_VALUE / blockSize);
+        if (blocks <= 0) {
+            throw new IllegalArgumentException("Ёмкость кеша меньше одного блока");
+        }
+        this.blockSize = blockSize;
+        this.region = ByteBuffer.allocateDirect(blocks * blockSize);
+        this.freeBlocks = new int[blocks];
+        for (int i = 0; i < blocks; i++) {
+            freeBlocks[i] = blocks - 1 - i;
+        }
+        this.freeCount = blocks;
+    }
+
+    public Optional<AvatarCache.CachedAvatar> get(AvatarKey key) {
+        lock.lock();
+        try {
+            Entry entry = entries.get(key);
+            if (entry == null) {
+                misses.increment();
+                return Optional.empty();
+            }
+            hits.increment();
+            entry.refCount++;
+            return Optional.of(new AvatarCache.CachedAvatar(entry.mediaType, new OffHeapResource(entry, new Lease(entry))));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean put(AvatarKey key, String mediaType, byte[] data) {
+        int needed = (data.length + blockSize - 1) / blockSize;
+        if (needed > freeBlocks.length) {
+            return false;
+        }
+        lock.lock();
+        try {
+            Entry previous = entries.remove(key);
+            if (previous != null) {
+                release(previous);
+            }
+            Iterator<Entry> eldest = entries.values().iterator();
+            while (freeCount < needed && eldest.hasNext()) {
+                Entry victim = eldest.next();
+                eldest.remove();
+                evictions.increment();
+                release(victim);
+            }
+            if (freeCount < needed) {
+                return false;
+            }
+            int[] blocks = new int[needed];
+            for (int i = 0; i < needed; i++) {
+                blocks[i] = freeBlocks[--freeCount];
+                int offset = i * blockSize;
+                region.put(blocks[i] * blockSize, data, offset, Math.min(blockSize, data.length - offset));
+            }
+            entries.put(key, new Entry(blocks, data.length, mediaType));
+            residentBytes += data.length;
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void invalidate(AvatarKey key) {
+        lock.lock();
+        try {
+            Entry entry = entries.remove(key);
+            if (entry != null) {
+                release(entry);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long capacity() {
+        return region.capacity();
+    }
+
+    public long residentBytes() {
+        lock.lock();
+        try {
+            return residentBytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long usedBytes() {
+        lock.lock();
+        try {
+            return (long) (freeBlocks.length - freeCount) * blockSize;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long hitCount() {
+        return hits.sum();
+    }
+
+    public long missCount() {
+        return misses.sum();
+    }
+
+    public long evictionCount() {
+        return evictions.sum();
+    }
+
+    // Запись убрана из кеша: снимается ссылка самого кеша
+    private void release(Entry entry) {
+        residentBytes -= entry.length;
+        unreference(entry);
+    }
+
+    private void unreference(Entry entry) {
+        if (--entry.refCount == 0) {
+            for (int block : entry.blocks) {
+                freeBlocks[freeCount++] = block;
+            }
+        }
+    }
+
+    private void releaseReference(Entry entry) {
+        lock.lock();
+        try {
+            unreference(entry);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Lease acquire(Entry entry) throws IOException {
+        lock.lock();
+        try {
+            if (entry.refCount == 0) {
+                throw new IOException("Запись вытеснена из кеша, её блоки уже освобождены");
+            }
+            entry.refCount++;
+            return new Lease(entry);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static final class Entry {
+        private final int[] blocks;
+        private final int length;
+        private final String mediaType;
+        private int refCount = 1;
+
+        private Entry(int[] blocks, int length, String mediaType) {
+            this.blocks = blocks;
+            this.length = length;
+            this.mediaType = mediaType;
+        }
+    }
+
+    // Одна ссылка на блоки записи; освобождается не больше одного раза — явно или через Cleaner
+    private final class Lease implements Runnable {
+
+        private final Entry entry;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Lease(Entry entry) {
+            this.entry = entry;
+        }
+
+        @Override
+        public void run() {
+            if (released.compareAndSet(false, true)) {
+                releaseReference(entry);
+            }
+        }
+    }
+
+    private final class OffHeapResource extends AbstractResource {
+
+        private final Entry entry;
+        private final Lease lease;
+        private final AtomicBoolean leaseTaken = new AtomicBoolean();
+
+        private OffHeapResource(Entry entry, Lease lease) {
+            this.entry = entry;
+            this.lease = lease;
+            CLEANER.register(this, lease);
+        }
+
+        // Первый поток забирает ссылку Resource, следующие (например, для нескольких Range) берут свою
+        @Override
+        public InputStream getInputStream() throws IOException {
+            Lease streamLease = leaseTaken.compareAndSet(false, true) ? lease : acquire(entry);
+            return new BlockInputStream(this, streamLease);
+        }
+
+        @Override
+        public long contentLength() {
+            return entry.length;
+        }
+
+        @Override
+        public boolean exists() {
+            return true;
+        }
+
+        @Override
+        public String getDescription() {
+            return "Off-heap avatar [" + entry.length + " bytes]";
+        }
+    }
+
+    private final class BlockInputStream extends InputStream {
+
+        // Держит ссылку на Resource, чтобы Cleaner не освободил его ссылку, пока поток читается
+        private final OffHeapResource resource;
+        private final Lease lease;
+        private int position;
+
+        private BlockInputStream(OffHeapResource resource, Lease lease) {
+            this.resource = resource;
+            this.lease = lease;
+            CLEANER.register(this, lease);
+        }
+
+        @Override
+        public void close() {
+            position = resource.entry.length;
+            lease.run();
+        }
+
+        @Override
+        public int read() {
+            if (position >= resource.entry.length) {
+                return -1;
+            }
+            int value = region.get(absolute(position)) & 0xFF;
+            position++;
+            return value;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            int remaining = resource.entry.length - position;
+            if (remaining <= 0) {
+                return -1;
+            }
+            int count = Math.min(len, Math.min(remaining, blockSize - position % blockSize));
+            region.get(absolute(position), b, off, count);
+            position += count;
+            return count;
+        }
+
+        // Сервлетный поток принимает ByteBuffer: блоки уходят в ответ прямо из прямой памяти
+        @Override
+        public long transferTo(OutputStream out) throws IOException {
+            if (!(out instanceof ServletOutputStream servlet)) {
+                return super.transferTo(out);
+            }
+            long transferred = 0;
+            while (position < resource.entry.length) {
+                int count = Math.min(resource.entry.length - position, blockSize - position % blockSize);
+                servlet.write(region.slice(absolute(position), count));
+                position += count;
+                transferred += count;
+            }
+            return transferred;
+        }
+
+        @Override
+        public long skip(long n) {
+            int count = (int) Math.max(0, Math.min(n, resource.entry.length - position));
+            position += count;
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return resource.entry.length - position;
+        }
+
+        private int absolute(int offset) {
+            return resource.entry.blocks[offset / blockSize] * blockSize + offset % blockSize;
+        }
+    }
+}
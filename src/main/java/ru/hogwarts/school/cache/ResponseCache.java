@@ -0,0 +1,194 @@
+package ru.hogwarts.school.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.util.DigestUtils;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+import ru.hogwarts.school.event.FacultyChangedEvent;
+import ru.hogwarts.school.event.StudentChangedEvent;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Кэш готовых JSON-ответов для редко меняющихся GET-эндпоинтов: хранит закодированные байты,
+ * ETag и, для крупных ответов, сжатый вариант. Попадание пишется в ответ без контроллера и Jackson.
+ * <p>
+ * Записи сбрасываются по {@link StudentChangedEvent} и {@link FacultyChangedEvent}. Ответ, который
+ * собирался во время сброса, в кэш не попадает: это отслеживается счётчиком поколений группы.
+ */
+public class ResponseCache extends OncePerRequestFilter implements MeterBinder {
+
+    enum Group {
+        STUDENTS, FACULTIES
+    }
+
+    private static final Map<String, Group> PATHS = Map.of(
+            "/faculties", Group.FACULTIES,
+            "/students/total", Group.STUDENTS,
+            "/students/average-age", Group.STUDENTS,
+            "/students/last-five", Group.STUDENTS);
+
+    private final Cache<Key, CachedResponse> cache;
+    private final Map<Group, AtomicLong> generations = new EnumMap<>(Group.class);
+    private final long gzipMinSize;
+
+    public ResponseCache(long maxEntries, long gzipMinSize) {
+        this.cache = Caffeine.newBuilder().maximumSize(maxEntries).recordStats().build();
+        this.gzipMinSize = gzipMinSize;
+        for (Group group : Group.values()) {
+            generations.put(group, new AtomicLong());
+        }
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !HttpMethod.GET.matches(request.getMethod()) || PATHS.get(pathOf(request)) == null;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+        Group group = PATHS.get(pathOf(request));
+        Key key = new Key(group, pathOf(request) + "?" + new TreeMap<>(request.getParameterMap()).entrySet().stream()
+                .map(entry -> entry.getKey() + "=" + String.join(",", entry.getValue()))
+                .reduce((left, right) -> left + "&" + right)
+                .orElse(""));
+
+        CachedResponse cached = cache.getIfPresent(key);
+        if (cached != null) {
+            write(request, response, cached);
+            return;
+        }
+
+        AtomicLong generation = generations.get(group);
+        long before = generation.get();
+        ContentCachingResponseWrapper wrapper = new ContentCachingResponseWrapper(response);
+        try {
+            filterChain.doFilter(request, wrapper);
+            if (wrapper.getStatus() == HttpServletResponse.SC_OK && isJson(wrapper.getContentType())) {
+                CachedResponse fresh = CachedResponse.of(wrapper.getContentType(), wrapper.getContentAsByteArray(), gzipMinSize);
+                wrapper.setHeader(HttpHeaders.ETAG, fresh.etag());
+                // Следующие попадания могут отдать сжатый вариант, поэтому и первый ответ должен его объявлять
+                wrapper.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+                if (generation.get() == before) {
+                    cache.put(key, fresh);
+                    // Сброс мог случиться между проверкой и записью
+                    if (generation.get() != before) {
+                        cache.invalidate(key);
+                    }
+                }
+            }
+        } finally {
+            wrapper.copyBodyToResponse();
+        }
+    }
+
+    // Выполняется после StudentStatistics, чтобы новый ответ не собрался из ещё не обновлённых счётчиков
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onStudentChanged(StudentChangedEvent event) {
+        invalidate(Group.STUDENTS);
+        // В /faculties?expand=students видны студенты
+        invalidate(Group.FACULTIES);
+    }
+
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onFacultyChanged(FacultyChangedEvent event) {
+        invalidate(Group.FACULTIES);
+    }
+
+    void invalidate(Group group) {
+        generations.get(group).incrementAndGet();
+        cache.asMap().keySet().removeIf(key -> key.group() == group);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, cache, "responses");
+    }
+
+    private static void write(HttpServletRequest request, HttpServletResponse response, CachedResponse cached) throws IOException {
+        response.setHeader(HttpHeaders.ETAG, cached.etag());
+        response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (matches(request.getHeader(HttpHeaders.IF_NONE_MATCH), cached.etag())) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+        byte[] body = cached.body();
+        String acceptEncoding = request.getHeader(HttpHeaders.ACCEPT_ENCODING);
+        if (cached.gzipped() != null && acceptEncoding != null && acceptEncoding.contains("gzip")) {
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+            body = cached.gzipped();
+        }
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.setContentType(cached.contentType());
+        response.setContentLength(body.length);
+        response.getOutputStream().write(body);
+    }
+
+    private static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String value = candidate.trim();
+            if (value.equals("*") || value.equals(etag) || value.equals("W/" + etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isJson(String contentType) {
+        return contentType != null && MediaType.APPLICATION_JSON.isCompatibleWith(MediaType.parseMediaType(contentType));
+    }
+
+    private static String pathOf(HttpServletRequest request) {
+        return request.getRequestURI().substring(request.getContextPath().length());
+    }
+
+    private record Key(Group group, String uri) {
+    }
+
+    private record CachedResponse(String contentType, byte[] body, byte[] gzipped, String etag) {
+
+        static CachedResponse of(String contentType, byte[] body, long gzipMinSize) {
+            byte[] gzipped = body.length >= gzipMinSize ? gzip(body) : null;
+            if (gzipped != null && gzipped.length >= body.length) {
+                gzipped = null;
+            }
+            return new CachedResponse(contentType, body, gzipped, "\"" + DigestUtils.md5DigestAsHex(body) + "\"");
+        }
+
+        private static byte[] gzip(byte[] body) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(body.length / 2);
+            try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+                gzip.write(body);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return out.toByteArray();
+        }
+    }
+}
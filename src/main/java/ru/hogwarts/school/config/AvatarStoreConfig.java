@@ -0,0 +1,34 @@
+package ru.hogwarts.school.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import ru.hogwarts.school.repository.AvatarContentRepository;
+import ru.hogwarts.school.store.*;
+
+import javax.sql.DataSource;
+import java.nio.file.Paths;
+
+@Configuration
+public class AvatarStoreConfig {
+
+    @Bean
+    public FileAvatarStore fileAvatarStore(@Value("${app.avatar.dir}") String avatarPath, @Value("${app.avatar.shard-depth:2}") int shardDepth) {
+        return new FileAvatarStore(Paths.get(avatarPath), shardDepth);
+    }
+
+    @Bean
+    public DbAvatarStore dbAvatarStore(AvatarContentRepository avatarContentRepository, DataSource dataSource) {
+        return new DbAvatarStore(avatarContentRepository, dataSource);
+    }
+
+    @Bean
+    public DualAvatarStore dualAvatarStore(FileAvatarStore fileAvatarStore, DbAvatarStore dbAvatarStore) {
+        return new DualAvatarStore(fileAvatarStore, dbAvatarStore);
+    }
+
+    @Bean
+    public AvatarStores avatarStores(@Value("${app.avatar.store:dual}") String mode, FileAvatarStore fileAvatarStore, DbAvatarStore dbAvatarStore, DualAvatarStore dualAvatarStore) {
+        return new AvatarStores(AvatarStoreMode.valueOf(mode.trim().toUpperCase()), fileAvatarStore, dbAvatarStore, dualAvatarStore);
+    }
+}
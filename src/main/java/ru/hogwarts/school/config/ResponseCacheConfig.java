@@ -0,0 +1,19 @@
+package ru.hogwarts.school.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+import ru.hogwarts.school.cache.ResponseCache;
+
+@Configuration
+@ConditionalOnProperty(name = "app.response-cache.enabled", havingValue = "true", matchIfMissing = true)
+public class ResponseCacheConfig {
+
+    @Bean
+    public ResponseCache responseCache(@Value("${app.response-cache.max-entries:1000}") long maxEntries,
+                                       @Value("${app.response-cache.gzip-min-size:1KB}") DataSize gzipMinSize) {
+        return new ResponseCache(maxEntries, gzipMinSize.toBytes());
+    }
+}
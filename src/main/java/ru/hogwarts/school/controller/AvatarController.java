@@ -1,22 +1,55 @@
 package ru.hogwarts.school.controller;
 
-import org.springframework.data.domain.Page;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.hogwarts.school.dto.AvatarInfo;
+import ru.hogwarts.school.dto.CursorPage;
 import ru.hogwarts.school.model.Avatar;
+import ru.hogwarts.school.service.AvatarData;
+import ru.hogwarts.school.service.AvatarIngestionService;
+import ru.hogwarts.school.service.AvatarIngestionService.UploadStatus;
 import ru.hogwarts.school.service.AvatarService;
+import ru.hogwarts.school.service.AvatarValidator;
+import ru.hogwarts.school.service.AvatarStoreMigrator;
+import ru.hogwarts.school.service.AvatarStoreMigrator.MigrationStatus;
+import ru.hogwarts.school.service.AvatarStoreMigrator.ReshardStatus;
+import ru.hogwarts.school.store.AvatarStoreMode;
 
 import java.io.IOException;
+import java.net.URI;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.RejectedExecutionException;
 
 @RestController
 @RequestMapping("/avatars")
 public class AvatarController {
 
     private final AvatarService avatarService;
+    private final AvatarIngestionService avatarIngestionService;
+    private final AvatarStoreMigrator avatarStoreMigrator;
+    private final CacheControl avatarCacheControl;
 
-    public AvatarController(AvatarService avatarService) {
+    public AvatarController(AvatarService avatarService, AvatarIngestionService avatarIngestionService, AvatarStoreMigrator avatarStoreMigrator,
+                            @Value("${app.avatar.cache-control.max-age:1m}") Duration avatarMaxAge) {
         this.avatarService = avatarService;
+        this.avatarIngestionService = avatarIngestionService;
+        this.avatarStoreMigrator = avatarStoreMigrator;
+        // Содержимое по адресу меняется при новой загрузке, поэтому после max-age клиент перепроверяет ETag
+        this.avatarCacheControl = CacheControl.maxAge(avatarMaxAge).cachePublic().mustRevalidate();
     }
 
     @PostMapping(value = "/upload", consumes = "multipart/form-data")
@@ -25,23 +58,104 @@ public class AvatarController {
         return ResponseEntity.ok(avatar);
     }
 
+    @PostMapping(value = "/uploads", consumes = "multipart/form-data")
+    public ResponseEntity<UploadStatus> submitAvatarUpload(@RequestParam Long studentId, @RequestParam MultipartFile file) throws IOException {
+        UploadStatus status;
+        try {
+            status = avatarIngestionService.submit(studentId, file);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).header("Retry-After", "1").build();
+        }
+        return ResponseEntity.accepted().location(URI.create("/avatars/uploads/" + status.ticket())).body(status);
+    }
+
+    @GetMapping("/uploads/{ticket}")
+    public UploadStatus getAvatarUploadStatus(@PathVariable UUID ticket) {
+        return avatarIngestionService.getStatus(ticket).orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Заявка на загрузку " + ticket + " не найдена"));
+    }
+
     @GetMapping("/{studentId}/from-db")
-    public ResponseEntity<byte[]> getAvatarFromDb(@PathVariable Long studentId) {
-        Avatar avatar = avatarService.findAvatar(studentId);
-        return ResponseEntity.ok().header("Content-Type", avatar.getMediaType()).body(avatar.getData());
+    public ResponseEntity<Resource> getAvatarFromDb(@PathVariable Long studentId, @RequestParam(required = false) Integer size, WebRequest request) throws IOException {
+        return avatarResponse(studentId, size, request);
     }
 
     @GetMapping("/{studentId}/from-file")
-    public ResponseEntity<byte[]> getAvatarFromFile(@PathVariable Long studentId) throws IOException {
-        Avatar avatar = avatarService.findAvatar(studentId);
-        byte[] data = java.nio.file.Files.readAllBytes(java.nio.file.Paths.get(avatar.getFilePath()));
-        return ResponseEntity.ok().header("Content-Type", avatar.getMediaType()).body(data);
+    public ResponseEntity<Resource> getAvatarFromFile(@PathVariable Long studentId, @RequestParam(required = false) Integer size, WebRequest request) throws IOException {
+        return avatarResponse(studentId, size, request);
     }
 
     @GetMapping
-    public ResponseEntity<Page<Avatar>> getAllAvatars(@RequestParam(defaultValue = "0") int page, @RequestParam(defaultValue = "5") int size) {
-
-        Page<Avatar> avatars = avatarService.getAllAvatars(page, size);
+    public ResponseEntity<CursorPage<AvatarInfo>> getAllAvatars(@RequestParam(required = false) String cursor, @RequestParam(defaultValue = "5") int limit) {
+        CursorPage<AvatarInfo> avatars;
+        try {
+            avatars = avatarService.getAllAvatars(cursor, limit);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
         return ResponseEntity.ok(avatars);
     }
-}
\ No newline at end of file
+
+    @GetMapping("/archive")
+    public ResponseEntity<StreamingResponseBody> getAvatarArchive(@RequestParam(required = false) List<Long> studentIds, @RequestParam(required = false) Long facultyId, @RequestParam(required = false) Integer size) {
+        List<Avatar> avatars;
+        try {
+            avatars = avatarService.findAvatarsForArchive(studentIds, facultyId);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+        StreamingResponseBody body = out -> avatarService.writeArchive(avatars, size, out);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("application/zip"))
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment().filename("avatars.zip").build().toString())
+                .body(body);
+    }
+
+    @PostMapping("/store/migrate")
+    public ResponseEntity<MigrationStatus> migrateAvatars(@RequestParam AvatarStoreMode from, @RequestParam AvatarStoreMode to, @RequestParam(defaultValue = "100") int batchSize, @RequestParam(defaultValue = "false") boolean deleteSource) {
+        MigrationStatus status;
+        try {
+            status = avatarStoreMigrator.startMigration(from, to, batchSize, deleteSource);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        } catch (IllegalStateException e) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, e.getMessage());
+        }
+        return ResponseEntity.accepted().location(URI.create("/avatars/store/migrate/" + status.ticket())).body(status);
+    }
+
+    @GetMapping("/store/migrate/{ticket}")
+    public MigrationStatus getMigrationStatus(@PathVariable UUID ticket) {
+        return avatarStoreMigrator.getMigrationStatus(ticket).orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Перенос " + ticket + " не найден"));
+    }
+
+    @PostMapping("/store/reshard")
+    public ResponseEntity<ReshardStatus> reshardAvatars(@RequestParam(defaultValue = "4") int threads) {
+        ReshardStatus status;
+        try {
+            status = avatarStoreMigrator.startReshard(threads);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        } catch (IllegalStateException e) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, e.getMessage());
+        }
+        return ResponseEntity.accepted().location(URI.create("/avatars/store/reshard/" + status.ticket())).body(status);
+    }
+
+    @GetMapping("/store/reshard/{ticket}")
+    public ReshardStatus getReshardStatus(@PathVariable UUID ticket) {
+        return avatarStoreMigrator.getReshardStatus(ticket).orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Перераскладка " + ticket + " не найдена"));
+    }
+
+    // Resource отдаётся потоком, заголовок Range обрабатывается Spring MVC (206 Partial Content).
+    // Условный запрос проверяется до чтения содержимого: на 304 хватает хеша и времени изменения
+    private ResponseEntity<Resource> avatarResponse(Long studentId, Integer size, WebRequest request) throws IOException {
+        Optional<AvatarValidator> validator = avatarService.findValidator(studentId, size);
+        if (validator.isPresent() && ConditionalRequests.notModified(request, validator.get().etag(), validator.get().lastModified())) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).cacheControl(avatarCacheControl).build();
+        }
+        AvatarData avatar = avatarService.loadAvatar(studentId, size).orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Аватар для студента с ID: " + studentId + ", не найден"));
+        return ResponseEntity.ok().cacheControl(avatarCacheControl).contentType(MediaType.parseMediaType(avatar.mediaType())).body(avatar.resource());
+    }
+}
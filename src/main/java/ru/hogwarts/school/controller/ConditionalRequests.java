@@ -0,0 +1,16 @@
+package ru.hogwarts.school.controller;
+
+import org.springframework.web.context.request.WebRequest;
+
+import java.time.Instant;
+
+final class ConditionalRequests {
+
+    private ConditionalRequests() {
+    }
+
+    // true, если у клиента актуальная версия; ETag и Last-Modified проставляются в ответ в любом случае
+    static boolean notModified(WebRequest request, String etag, Instant updatedAt) {
+        return request.checkNotModified(etag, updatedAt == null ? -1 : updatedAt.toEpochMilli());
+    }
+}
@@ -2,12 +2,16 @@ package ru.hogwarts.school.controller;
 
 import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.server.ResponseStatusException;
+import ru.hogwarts.school.dto.CursorPage;
+import ru.hogwarts.school.dto.FacultyDto;
+import ru.hogwarts.school.dto.FacultyStats;
+import ru.hogwarts.school.dto.StudentDto;
 import ru.hogwarts.school.model.Faculty;
-import ru.hogwarts.school.model.Student;
 import ru.hogwarts.school.service.FacultyService;
 
-import java.util.Collection;
+import java.util.List;
 
 @RestController
 @RequestMapping("/faculties")
@@ -20,46 +24,76 @@ public class FacultyController {
     }
 
     @GetMapping("/{id}")
-    public Faculty getFaculty(@PathVariable Long id) {
-        return facultyService.getFaculty(id).orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Факультет с ID: " + id + ", не найден"));
+    public FacultyDto getFaculty(@PathVariable Long id, @RequestParam(required = false) List<String> expand, WebRequest request) {
+        if (expandsStudents(expand)) {
+            return facultyService.getFacultyWithStudents(id).map(FacultyDto::withStudents).orElseThrow(() -> notFound(id));
+        }
+        // Версия факультета не меняется вместе со студентами, поэтому условный ответ только без expand
+        Faculty faculty = facultyService.getFaculty(id).orElseThrow(() -> notFound(id));
+        if (ConditionalRequests.notModified(request, "faculty-" + faculty.getId() + "-" + faculty.getVersion(), faculty.getUpdatedAt())) {
+            return null;
+        }
+        return FacultyDto.of(faculty);
     }
 
     @GetMapping
-    public Collection<Faculty> getAllFaculties() {
-        return facultyService.getAllFaculties();
+    public CursorPage<FacultyDto> getAllFaculties(@RequestParam(required = false) String cursor, @RequestParam(defaultValue = "50") int limit, @RequestParam(required = false) List<String> expand) {
+        try {
+            if (expandsStudents(expand)) {
+                return facultyService.getAllFacultiesWithStudents(cursor, limit).map(FacultyDto::withStudents);
+            }
+            return facultyService.getAllFaculties(cursor, limit).map(FacultyDto::of);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        } catch (IllegalStateException e) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, e.getMessage());
+        }
+    }
+
+    @GetMapping("/stats")
+    public List<FacultyStats> getFacultyStats() {
+        return facultyService.getFacultyStats();
     }
 
     @GetMapping(params = "color")
-    public Collection<Faculty> getFacultiesByColor(@RequestParam String color) {
-        return facultyService.getFacultyByColor(color);
+    public List<FacultyDto> getFacultiesByColor(@RequestParam String color) {
+        return facultyService.getFacultyByColor(color).stream().map(FacultyDto::of).toList();
     }
 
     @GetMapping("/filter")
-    public Collection<Faculty> getFacultiesByNameOrColor(@RequestParam String query) {
-        return facultyService.getFacultiesByNameOrColor(query);
+    public List<FacultyDto> getFacultiesByNameOrColor(@RequestParam String query) {
+        return facultyService.getFacultiesByNameOrColor(query).stream().map(FacultyDto::of).toList();
     }
 
     @GetMapping("/{id}/students")
-    public Collection<Student> getStudentsByFacultyId(@PathVariable Long id) {
+    public List<StudentDto> getStudentsByFacultyId(@PathVariable Long id) {
         return facultyService.getStudentsByFacultyId(id);
     }
 
     @PostMapping
     @ResponseStatus(HttpStatus.CREATED)
-    public Faculty addFaculty(@RequestBody Faculty faculty) {
-        return facultyService.addFaculty(faculty);
+    public FacultyDto addFaculty(@RequestBody Faculty faculty) {
+        return FacultyDto.of(facultyService.addFaculty(faculty));
     }
 
     @PutMapping
-    public Faculty updateFaculty(@RequestBody Faculty faculty) {
-        return facultyService.updateFaculty(faculty).orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Факультет с ID: " + faculty.getId() + ", не найден"));
+    public FacultyDto updateFaculty(@RequestBody Faculty faculty) {
+        return facultyService.updateFaculty(faculty).map(FacultyDto::of).orElseThrow(() -> notFound(faculty.getId()));
     }
 
     @DeleteMapping("/{id}")
     @ResponseStatus(HttpStatus.NO_CONTENT)
     public void deleteFaculty(@PathVariable Long id) {
         if (!facultyService.deleteFaculty(id).isPresent()) {
-            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Факультет с ID: " + id + ", не найден");
+            throw notFound(id);
         }
     }
+
+    private static boolean expandsStudents(List<String> expand) {
+        return expand != null && expand.contains("students");
+    }
+
+    private static ResponseStatusException notFound(Long id) {
+        return new ResponseStatusException(HttpStatus.NOT_FOUND, "Факультет с ID: " + id + ", не найден");
+    }
 }
\ No newline at end of file
@@ -1,13 +1,27 @@
 package ru.hogwarts.school.controller;
 
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.server.ResponseStatusException;
-import ru.hogwarts.school.model.Faculty;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.hogwarts.school.dto.AgeRangeIds;
+import ru.hogwarts.school.dto.AgeStats;
+import ru.hogwarts.school.dto.CursorPage;
+import ru.hogwarts.school.dto.FacultyDto;
+import ru.hogwarts.school.dto.ImportReport;
+import ru.hogwarts.school.dto.StudentDetails;
+import ru.hogwarts.school.dto.StudentSearchHit;
 import ru.hogwarts.school.model.Student;
+import ru.hogwarts.school.service.StudentExportService;
+import ru.hogwarts.school.service.StudentImportService;
 import ru.hogwarts.school.service.StudentService;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.Collection;
 import java.util.List;
 
@@ -15,20 +29,60 @@ import java.util.List;
 @RequestMapping("/students")
 public class StudentController {
 
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+    private static final MediaType CSV = MediaType.parseMediaType("text/csv");
+
     private final StudentService studentService;
+    private final StudentExportService studentExportService;
+    private final StudentImportService studentImportService;
 
-    public StudentController(StudentService studentService) {
+    public StudentController(StudentService studentService, StudentExportService studentExportService, StudentImportService studentImportService) {
         this.studentService = studentService;
+        this.studentExportService = studentExportService;
+        this.studentImportService = studentImportService;
     }
 
+    // При совпадении ETag или Last-Modified отдаётся 304 без тела
     @GetMapping("/{id}")
-    public Student getStudent(@PathVariable Long id) {
-        return studentService.getStudent(id).orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Студент с ID: " + id + ", не найден"));
+    public Student getStudent(@PathVariable Long id, WebRequest request) {
+        Student student = studentService.getStudent(id).orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Студент с ID: " + id + ", не найден"));
+        if (ConditionalRequests.notModified(request, "student-" + student.getId() + "-" + student.getVersion(), student.getUpdatedAt())) {
+            return null;
+        }
+        return student;
+    }
+
+    @GetMapping(value = "/{id}", params = "expand=faculty")
+    public StudentDetails getStudentWithFaculty(@PathVariable Long id) {
+        return studentService.getStudentDetails(id).orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Студент с ID: " + id + ", не найден"));
     }
 
     @GetMapping
-    public Collection<Student> getAllStudents() {
-        return studentService.getAllStudents();
+    public CursorPage<Student> getAllStudents(@RequestParam(required = false) String cursor, @RequestParam(defaultValue = "50") int limit) {
+        try {
+            return studentService.getAllStudents(cursor, limit);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportStudents(@RequestParam(defaultValue = "false") boolean gzip) {
+        StreamingResponseBody body = out -> studentExportService.exportStudents(out, gzip);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok().contentType(NDJSON);
+        if (gzip) {
+            response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return response.body(body);
+    }
+
+    @GetMapping("/search")
+    public List<StudentSearchHit> searchStudents(@RequestParam String q, @RequestParam(defaultValue = "0") int page, @RequestParam(defaultValue = "20") int limit) {
+        try {
+            return studentService.searchStudents(q, page, limit);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
     }
 
     @GetMapping(params = "age")
@@ -41,8 +95,27 @@ public class StudentController {
         return studentService.getStudentsByAgeBetween(min, max);
     }
 
+    @GetMapping("/age/ids")
+    public AgeRangeIds getStudentIdsByAgeBetween(@RequestParam int min, @RequestParam int max, @RequestParam(required = false) Long facultyId) {
+        try {
+            return studentService.getStudentIdsByAgeBetween(min, max, facultyId);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    // Только количество: список id не собирается
+    @GetMapping("/age/count")
+    public long countStudentsByAgeBetween(@RequestParam int min, @RequestParam int max, @RequestParam(required = false) Long facultyId) {
+        try {
+            return studentService.countStudentsByAgeBetween(min, max, facultyId);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
     @GetMapping("/{id}/faculty")
-    public Faculty getFacultyByStudentId(@PathVariable Long id) {
+    public FacultyDto getFacultyByStudentId(@PathVariable Long id) {
         return studentService.getFacultyByStudentId(id);
     }
 
@@ -51,6 +124,11 @@ public class StudentController {
         return studentService.getTotalStudentsCount();
     }
 
+    @GetMapping("/stats")
+    public AgeStats getStudentStats() {
+        return studentService.getStudentStats();
+    }
+
     @GetMapping("/average-age")
     public ResponseEntity<Double> getAverageAge() {
         double averageAge = studentService.getAverageAge();
@@ -65,7 +143,23 @@ public class StudentController {
     @PostMapping
     @ResponseStatus(HttpStatus.CREATED)
     public Student addStudent(@RequestBody Student student) {
-        return studentService.addStudent(student);
+        try {
+            return studentService.addStudent(student);
+        } catch (IllegalStateException e) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, e.getMessage());
+        }
+    }
+
+    @PostMapping(value = "/import", consumes = {"text/csv", "application/json", "application/x-ndjson"})
+    public ImportReport importStudents(@RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType, InputStream body) throws IOException {
+        try {
+            if (MediaType.parseMediaType(contentType).isCompatibleWith(CSV)) {
+                return studentImportService.importCsv(body);
+            }
+            return studentImportService.importJson(body);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
     }
 
     @PutMapping
@@ -80,4 +174,4 @@ public class StudentController {
             throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Студент с ID: " + id + ", не найден");
         }
     }
-}
\ No newline at end of file
+}
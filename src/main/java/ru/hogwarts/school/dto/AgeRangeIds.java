@@ -0,0 +1,4 @@
+package ru.hogwarts.school.dto;
+
+public record AgeRangeIds(int min, int max, Long facultyId, long count, long[] ids) {
+}
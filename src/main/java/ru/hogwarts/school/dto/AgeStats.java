@@ -0,0 +1,21 @@
+package ru.hogwarts.school.dto;
+
+import java.util.Map;
+import java.util.SortedMap;
+
+public record AgeStats(long count, double averageAge, Integer minAge, Integer maxAge, SortedMap<Integer, Long> ageHistogram) {
+
+    public static AgeStats of(SortedMap<Integer, Long> ageHistogram) {
+        long count = 0;
+        long ageSum = 0;
+        for (Map.Entry<Integer, Long> entry : ageHistogram.entrySet()) {
+            count += entry.getValue();
+            ageSum += (long) entry.getKey() * entry.getValue();
+        }
+        return new AgeStats(count,
+                count == 0 ? 0.0 : (double) ageSum / count,
+                ageHistogram.isEmpty() ? null : ageHistogram.firstKey(),
+                ageHistogram.isEmpty() ? null : ageHistogram.lastKey(),
+                ageHistogram);
+    }
+}
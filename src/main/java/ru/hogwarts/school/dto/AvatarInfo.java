@@ -0,0 +1,8 @@
+package ru.hogwarts.school.dto;
+
+public record AvatarInfo(Long id, Long studentId, String mediaType, long fileSize, String url) {
+
+    public AvatarInfo(Long id, Long studentId, String mediaType, long fileSize) {
+        this(id, studentId, mediaType, fileSize, "/avatars/" + studentId + "/from-file");
+    }
+}
@@ -0,0 +1,6 @@
+package ru.hogwarts.school.dto;
+
+import java.time.Instant;
+
+public record AvatarVersion(Long id, String contentHash, long version, Instant updatedAt) {
+}
@@ -0,0 +1,52 @@
+package ru.hogwarts.school.dto;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Страница выборки по ключу: следующая начинается после последнего id из {@code items}.
+ * {@code nextCursor} равен null, когда записей больше нет.
+ */
+public record CursorPage<T>(List<T> items, String nextCursor) {
+
+    public static final int MAX_LIMIT = 500;
+
+    /**
+     * Собирает страницу из выборки размером до {@code limit + 1}: лишняя запись лишь показывает, что есть продолжение.
+     */
+    public static <T> CursorPage<T> of(List<T> rows, int limit, Function<T, Long> idOf) {
+        if (rows.size() <= limit) {
+            return new CursorPage<>(rows, null);
+        }
+        List<T> items = List.copyOf(rows.subList(0, limit));
+        return new CursorPage<>(items, encode(idOf.apply(items.get(limit - 1))));
+    }
+
+    public <R> CursorPage<R> map(Function<T, R> mapper) {
+        return new CursorPage<>(items.stream().map(mapper).toList(), nextCursor);
+    }
+
+    public static int checkLimit(int limit) {
+        if (limit <= 0 || limit > MAX_LIMIT) {
+            throw new IllegalArgumentException("limit должен быть от 1 до " + MAX_LIMIT);
+        }
+        return limit;
+    }
+
+    public static String encode(long id) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(Long.toString(id).getBytes(StandardCharsets.US_ASCII));
+    }
+
+    public static long decode(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return 0L;
+        }
+        try {
+            return Long.parseLong(new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.US_ASCII));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Некорректный курсор: " + cursor);
+        }
+    }
+}
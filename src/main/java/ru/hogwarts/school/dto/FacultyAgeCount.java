@@ -0,0 +1,4 @@
+package ru.hogwarts.school.dto;
+
+public record FacultyAgeCount(Long facultyId, String facultyName, Integer age, Long count) {
+}
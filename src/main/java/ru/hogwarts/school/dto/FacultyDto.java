@@ -0,0 +1,20 @@
+package ru.hogwarts.school.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import ru.hogwarts.school.model.Faculty;
+
+import java.util.List;
+
+/**
+ * Факультет в ответах API; {@code students} заполняется только при {@code ?expand=students}.
+ */
+public record FacultyDto(Long id, String name, String color, @JsonInclude(JsonInclude.Include.NON_NULL) List<StudentDto> students) {
+
+    public static FacultyDto of(Faculty faculty) {
+        return new FacultyDto(faculty.getId(), faculty.getName(), faculty.getColor(), null);
+    }
+
+    public static FacultyDto withStudents(Faculty faculty) {
+        return new FacultyDto(faculty.getId(), faculty.getName(), faculty.getColor(), faculty.getStudents().stream().map(StudentDto::of).toList());
+    }
+}
@@ -0,0 +1,4 @@
+package ru.hogwarts.school.dto;
+
+public record FacultyStats(Long facultyId, String name, AgeStats ages) {
+}
@@ -0,0 +1,12 @@
+package ru.hogwarts.school.dto;
+
+import java.util.List;
+
+public record ImportReport(long imported, long failed, List<RowError> errors) {
+
+    /**
+     * Ошибка в строке {@code row} входных данных; строки нумеруются с единицы, без учёта заголовка CSV.
+     */
+    public record RowError(long row, String message) {
+    }
+}
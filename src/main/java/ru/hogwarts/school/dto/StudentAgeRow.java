@@ -0,0 +1,4 @@
+package ru.hogwarts.school.dto;
+
+public record StudentAgeRow(Long id, Integer age, Long facultyId) {
+}
@@ -0,0 +1,11 @@
+package ru.hogwarts.school.dto;
+
+/**
+ * Студент вместе с факультетом, собранный из одного запроса с JOIN.
+ */
+public record StudentDetails(Long id, String name, int age, FacultyDto faculty) {
+
+    public StudentDetails(Long id, String name, int age, Long facultyId, String facultyName, String facultyColor) {
+        this(id, name, age, facultyId == null ? null : new FacultyDto(facultyId, facultyName, facultyColor, null));
+    }
+}
@@ -0,0 +1,10 @@
+package ru.hogwarts.school.dto;
+
+import ru.hogwarts.school.model.Student;
+
+public record StudentDto(Long id, String name, int age, Long facultyId) {
+
+    public static StudentDto of(Student student) {
+        return new StudentDto(student.getId(), student.getName(), student.getAge(), student.getFaculty() != null ? student.getFaculty().getId() : null);
+    }
+}
@@ -0,0 +1,7 @@
+package ru.hogwarts.school.event;
+
+/**
+ * Факультет добавлен, изменён или удалён. Слушатели получают событие после фиксации транзакции.
+ */
+public record FacultyChangedEvent(Long facultyId) {
+}
@@ -0,0 +1,16 @@
+package ru.hogwarts.school.event;
+
+/**
+ * Студент добавлен ({@code before == null}), изменён или удалён ({@code after == null}).
+ * Слушатели получают событие после фиксации транзакции.
+ */
+public record StudentChangedEvent(StudentSnapshot before, StudentSnapshot after) {
+
+    public static StudentChangedEvent created(StudentSnapshot student) {
+        return new StudentChangedEvent(null, student);
+    }
+
+    public static StudentChangedEvent deleted(StudentSnapshot student) {
+        return new StudentChangedEvent(student, null);
+    }
+}
@@ -0,0 +1,10 @@
+package ru.hogwarts.school.event;
+
+import ru.hogwarts.school.model.Student;
+
+public record StudentSnapshot(Long id, String name, int age, Long facultyId) {
+
+    public static StudentSnapshot of(Student student) {
+        return new StudentSnapshot(student.getId(), student.getName(), student.getAge(), student.getFaculty() != null ? student.getFaculty().getId() : null);
+    }
+}
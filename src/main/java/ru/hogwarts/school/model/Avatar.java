@@ -1,9 +1,11 @@
 package ru.hogwarts.school.model;
 
 import com.fasterxml.jackson.annotation.JsonBackReference;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
+import org.hibernate.annotations.UpdateTimestamp;
 
-import java.util.Arrays;
+import java.time.Instant;
 import java.util.Objects;
 
 @Entity
@@ -22,14 +24,23 @@ public class Avatar {
     @Column(name = "media_type", nullable = false)
     private String mediaType;
 
-    @Lob
-    private byte[] data;
+    @Column(name = "content_hash", length = 64)
+    private String contentHash;
 
-    @OneToOne
+    @OneToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "student_id", nullable = false)
     @JsonBackReference
     private Student student;
 
+    @Version
+    @JsonIgnore
+    private long version;
+
+    @UpdateTimestamp
+    @Column(name = "updated_at", nullable = false)
+    @JsonIgnore
+    private Instant updatedAt;
+
     public Avatar() {
     }
 
@@ -43,6 +54,10 @@ public class Avatar {
         return id;
     }
 
+    public void setId(Long id) {
+        this.id = id;
+    }
+
     public String getFilePath() {
         return filePath;
     }
@@ -67,12 +82,12 @@ public class Avatar {
         this.mediaType = mediaType;
     }
 
-    public byte[] getData() {
-        return data;
+    public String getContentHash() {
+        return contentHash;
     }
 
-    public void setData(byte[] data) {
-        this.data = data;
+    public void setContentHash(String contentHash) {
+        this.contentHash = contentHash;
     }
 
     public Student getStudent() {
@@ -83,20 +98,28 @@ public class Avatar {
         this.student = student;
     }
 
+    public long getVersion() {
+        return version;
+    }
+
+    public Instant getUpdatedAt() {
+        return updatedAt;
+    }
+
     @Override
     public String toString() {
-        return "Avatar{" + "id=" + id + ", filePath='" + filePath + '\'' + ", fileSize=" + fileSize + ", mediaType='" + mediaType + '\'' + ", data=" + Arrays.toString(data) + '}';
+        return "Avatar{" + "id=" + id + ", filePath='" + filePath + '\'' + ", fileSize=" + fileSize + ", mediaType='" + mediaType + '\'' + ", contentHash='" + contentHash + '\'' + '}';
     }
 
     @Override
     public boolean equals(Object o) {
         if (o == null || getClass() != o.getClass()) return false;
         Avatar avatar = (Avatar) o;
-        return fileSize == avatar.fileSize && Objects.equals(id, avatar.id) && Objects.equals(filePath, avatar.filePath) && Objects.equals(mediaType, avatar.mediaType);
+        return fileSize == avatar.fileSize && Objects.equals(id, avatar.id) && Objects.equals(filePath, avatar.filePath) && Objects.equals(mediaType, avatar.mediaType) && Objects.equals(contentHash, avatar.contentHash);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(id, filePath, fileSize, mediaType);
+        return Objects.hash(id, filePath, fileSize, mediaType, contentHash);
     }
 }
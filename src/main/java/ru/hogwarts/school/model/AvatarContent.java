@@ -0,0 +1,80 @@
+package ru.hogwarts.school.model;
+
+import jakarta.persistence.*;
+import org.springframework.data.domain.Persistable;
+
+import java.sql.Blob;
+import java.util.Objects;
+
+@Entity
+@Table(name = "avatar_content")
+public class AvatarContent implements Persistable<String> {
+
+    @Id
+    @Column(length = 64)
+    private String hash;
+
+    @Column(nullable = false)
+    private long size;
+
+    @Lob
+    @Column(nullable = false)
+    private Blob data;
+
+    @Transient
+    private boolean isNew = true;
+
+    public AvatarContent() {
+    }
+
+    public AvatarContent(String hash, long size, Blob data) {
+        this.hash = hash;
+        this.size = size;
+        this.data = data;
+    }
+
+    @Override
+    public String getId() {
+        return hash;
+    }
+
+    public String getHash() {
+        return hash;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public Blob getData() {
+        return data;
+    }
+
+    @Override
+    public boolean isNew() {
+        return isNew;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markNotNew() {
+        this.isNew = false;
+    }
+
+    @Override
+    public String toString() {
+        return "AvatarContent{" + "hash='" + hash + '\'' + ", size=" + size + '}';
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof AvatarContent that)) return false;
+        return Objects.equals(hash, that.hash);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(hash);
+    }
+}
@@ -0,0 +1,19 @@
+package ru.hogwarts.school.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+import ru.hogwarts.school.model.AvatarContent;
+
+import java.util.Optional;
+
+@Repository
+public interface AvatarContentRepository extends JpaRepository<AvatarContent, String> {
+
+    @Query("SELECT c.size FROM AvatarContent c WHERE c.hash = :hash")
+    Optional<Long> findSizeByHash(String hash);
+
+    // Удаление строки не освобождает large object из колонки data, поэтому он удаляется явно
+    @Query(value = "WITH removed AS (DELETE FROM avatar_content WHERE hash = :hash RETURNING data) SELECT count(lo_unlink(data)) FROM removed", nativeQuery = true)
+    long deleteWithData(String hash);
+}
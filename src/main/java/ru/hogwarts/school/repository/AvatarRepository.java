@@ -1,16 +1,48 @@
 package ru.hogwarts.school.repository;
 
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
+import ru.hogwarts.school.dto.AvatarInfo;
+import ru.hogwarts.school.dto.AvatarVersion;
 import ru.hogwarts.school.model.Avatar;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface AvatarRepository extends JpaRepository<Avatar, Long> {
     Optional<Avatar> findByStudentId(Long studentId);
 
+    @Query("SELECT new ru.hogwarts.school.dto.AvatarVersion(a.id, a.contentHash, a.version, a.updatedAt) FROM Avatar a WHERE a.student.id = :studentId")
+    Optional<AvatarVersion> findVersionByStudentId(Long studentId);
+
+    List<Avatar> findByStudentIdIn(Collection<Long> studentIds);
+
+    List<Avatar> findByStudentFacultyIdOrderById(Long facultyId, Limit limit);
+
+    boolean existsByContentHash(String contentHash);
+
+    // Блокировка держится до конца транзакции: загрузка с тем же хешем и удаление содержимого идут по очереди
+    @Query(value = "SELECT 1 FROM (SELECT pg_advisory_xact_lock(:key)) l", nativeQuery = true)
+    Integer lockContent(long key);
+
+    @Query("SELECT DISTINCT a.contentHash FROM Avatar a WHERE a.contentHash > :after ORDER BY a.contentHash")
+    List<String> findContentHashesAfter(String after, Limit limit);
+
+    List<Avatar> findByContentHashIsNullAndIdGreaterThanOrderById(Long id, Limit limit);
+
+    // Колонка data осталась от старой схемы и есть только на обновлённой базе; large object удаляется вместе со ссылкой
+    @Query(value = "WITH old AS (SELECT id, data FROM avatar WHERE id = :id AND data IS NOT NULL FOR UPDATE), " +
+            "cleared AS (UPDATE avatar a SET data = NULL FROM old WHERE a.id = old.id) SELECT count(lo_unlink(old.data)) FROM old", nativeQuery = true)
+    long releaseLegacyData(Long id);
+
     Page<Avatar> findAll(Pageable pageable);
+
+    @Query("SELECT new ru.hogwarts.school.dto.AvatarInfo(a.id, a.student.id, a.mediaType, a.fileSize) FROM Avatar a WHERE a.id > :after ORDER BY a.id")
+    List<AvatarInfo> findInfoAfter(Long after, Limit limit);
 }
@@ -1,13 +1,45 @@
 package ru.hogwarts.school.repository;
 
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
+import ru.hogwarts.school.dto.FacultyAgeCount;
 import ru.hogwarts.school.model.Faculty;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.Set;
 
 @Repository
 public interface FacultyRepository extends JpaRepository<Faculty, Long> {
+    @Query("SELECT f.id FROM Faculty f")
+    Set<Long> findAllIds();
+
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = "faculty-pages")
+    })
+    List<Faculty> findByIdGreaterThanOrderByIdAsc(Long id, Limit limit);
+
+    @Query("SELECT new ru.hogwarts.school.dto.FacultyAgeCount(f.id, f.name, s.age, COUNT(s)) FROM Faculty f LEFT JOIN f.students s GROUP BY f.id, f.name, s.age ORDER BY f.id, s.age")
+    List<FacultyAgeCount> countStudentsByFacultyAndAge();
+
+    @EntityGraph(attributePaths = "students")
+    Optional<Faculty> findWithStudentsById(Long id);
+
+    @EntityGraph(attributePaths = "students")
+    List<Faculty> findWithStudentsByIdIn(Collection<Long> ids);
+
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = "faculty-by-color")
+    })
     List<Faculty> findByColorIgnoreCase(String color);
 
     List<Faculty> findByNameIgnoreCaseOrColorIgnoreCase(String name, String color);
@@ -1,20 +1,86 @@
 package ru.hogwarts.school.repository;
 
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.hibernate.jpa.SpecHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
+import ru.hogwarts.school.dto.AgeCount;
+import ru.hogwarts.school.dto.StudentAgeRow;
+import ru.hogwarts.school.dto.StudentDetails;
+import ru.hogwarts.school.dto.StudentDto;
 import ru.hogwarts.school.model.Student;
 
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface StudentRepository extends JpaRepository<Student, Long> {
+    List<Student> findByIdGreaterThanOrderByIdAsc(Long id, Limit limit);
+
+    int EXPORT_FETCH_SIZE = 500;
+
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "" + EXPORT_FETCH_SIZE),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "false"),
+            @QueryHint(name = SpecHints.HINT_SPEC_CACHE_STORE_MODE, value = "BYPASS")
+    })
+    @Query("SELECT s FROM Student s ORDER BY s.id")
+    Stream<Student> streamAll();
+
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "" + EXPORT_FETCH_SIZE),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT new ru.hogwarts.school.dto.StudentAgeRow(s.id, s.age, s.faculty.id) FROM Student s ORDER BY s.id")
+    Stream<StudentAgeRow> streamAgeRows();
+
     List<Student> findByAge(int age);
 
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = "students-by-age")
+    })
     List<Student> findByAgeBetween(int min, int max);
 
+    @Query("SELECT s.id FROM Student s WHERE s.age BETWEEN :min AND :max AND (:facultyId IS NULL OR s.faculty.id = :facultyId) ORDER BY s.age, s.id")
+    List<Long> findIdsByAgeBetween(int min, int max, Long facultyId);
+
+    @Query("SELECT COUNT(s) FROM Student s WHERE s.age BETWEEN :min AND :max AND (:facultyId IS NULL OR s.faculty.id = :facultyId)")
+    long countByAgeBetween(int min, int max, Long facultyId);
+
     List<Student> findByFacultyId(Long facultyId);
 
+    @Query("SELECT new ru.hogwarts.school.dto.StudentDetails(s.id, s.name, s.age, f.id, f.name, f.color) FROM Student s LEFT JOIN s.faculty f WHERE s.id = :id")
+    Optional<StudentDetails> findDetailsById(Long id);
+
+    @Query("SELECT new ru.hogwarts.school.dto.StudentDto(s.id, s.name, s.age, s.faculty.id) FROM Student s WHERE s.faculty.id = :facultyId ORDER BY s.id")
+    List<StudentDto> findDtosByFacultyId(Long facultyId);
+
+    @Query("SELECT new ru.hogwarts.school.dto.AgeCount(s.age, COUNT(s)) FROM Student s GROUP BY s.age")
+    List<AgeCount> countByAge();
+
+    // Условие ILIKE обслуживает индекс idx_student_name_trgm, порядок — по близости к запросу
+    @Query(value = "SELECT s.id, s.name, s.age, s.faculty_id, word_similarity(:query, s.name) AS score FROM student s " +
+            "WHERE s.name ILIKE :pattern ORDER BY score DESC, s.id LIMIT :limit OFFSET :offset", nativeQuery = true)
+    List<Object[]> searchByName(String query, String pattern, int limit, long offset);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM Student s WHERE s.id = :id")
+    Optional<Student> findByIdForUpdate(Long id);
+
+    @Modifying
+    @Query("DELETE FROM Student s WHERE s.id = :id")
+    int deleteStudentById(Long id);
+
     @Query(value = "SELECT COUNT(*) FROM student", nativeQuery = true)
     Long countAllStudents();
 
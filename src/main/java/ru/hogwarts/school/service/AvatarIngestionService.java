@@ -0,0 +1,116 @@
+package ru.hogwarts.school.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+import ru.hogwarts.school.model.Avatar;
+import ru.hogwarts.school.repository.StudentRepository;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Service
+public class AvatarIngestionService {
+
+    private static final Logger log = LoggerFactory.getLogger(AvatarIngestionService.class);
+
+    private final AvatarService avatarService;
+    private final StudentRepository studentRepository;
+    private final ThreadPoolExecutor executor;
+    private final Cache<UUID, UploadStatus> statuses;
+
+    public AvatarIngestionService(AvatarService avatarService,
+                                  StudentRepository studentRepository,
+                                  @Value("${app.avatar.ingest.threads:2}") int threads,
+                                  @Value("${app.avatar.ingest.queue-capacity:50}") int queueCapacity,
+                                  @Value("${app.avatar.ingest.status-ttl:1h}") Duration statusTtl,
+                                  @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        this.avatarService = avatarService;
+        this.studentRepository = studentRepository;
+        AtomicInteger counter = new AtomicInteger();
+        // Загрузка — это в основном ожидание диска и базы; число потоков и очередь по-прежнему ограничивают нагрузку
+        ThreadFactory threadFactory = virtualThreads ? Thread.ofVirtual().name("avatar-ingest-", 1).factory() : runnable -> {
+            Thread thread = new Thread(runnable, "avatar-ingest-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queueCapacity), threadFactory);
+        this.statuses = Caffeine.newBuilder().expireAfterWrite(statusTtl).build();
+    }
+
+    public UploadStatus submit(Long studentId, MultipartFile file) throws IOException {
+        if (executor.getQueue().remainingCapacity() == 0) {
+            throw new RejectedExecutionException("Очередь загрузки аватаров переполнена");
+        }
+        if (!studentRepository.existsById(studentId)) {
+            throw new IllegalArgumentException("Студент с ID " + studentId + " не найден");
+        }
+        SpooledAvatar spooled = avatarService.spool(file);
+
+        UploadStatus queued = new UploadStatus(UUID.randomUUID(), studentId, UploadState.QUEUED, null, null, Instant.now());
+        statuses.put(queued.ticket(), queued);
+        try {
+            executor.execute(() -> process(queued, spooled));
+        } catch (RejectedExecutionException e) {
+            statuses.invalidate(queued.ticket());
+            Files.deleteIfExists(spooled.file());
+            throw e;
+        }
+        return queued;
+    }
+
+    public Optional<UploadStatus> getStatus(UUID ticket) {
+        return Optional.ofNullable(statuses.getIfPresent(ticket));
+    }
+
+    private void process(UploadStatus queued, SpooledAvatar spooled) {
+        statuses.put(queued.ticket(), queued.with(UploadState.PROCESSING, null, null));
+        try {
+            Avatar avatar = avatarService.storeAvatar(queued.studentId(), spooled);
+            statuses.put(queued.ticket(), queued.with(UploadState.DONE, avatar.getId(), null));
+        } catch (IOException | RuntimeException e) {
+            log.warn("Не удалось сохранить аватар по заявке {}", queued.ticket(), e);
+            statuses.put(queued.ticket(), queued.with(UploadState.FAILED, null, e.getMessage()));
+        } finally {
+            try {
+                Files.deleteIfExists(spooled.file());
+            } catch (IOException e) {
+                log.warn("Не удалось удалить временный файл {}", spooled.file(), e);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    public enum UploadState {
+        QUEUED,
+        PROCESSING,
+        DONE,
+        FAILED
+    }
+
+    public record UploadStatus(UUID ticket, Long studentId, UploadState state, Long avatarId, String error, Instant updatedAt) {
+
+        UploadStatus with(UploadState state, Long avatarId, String error) {
+            return new UploadStatus(ticket, studentId, state, avatarId, error, Instant.now());
+        }
+    }
+}
@@ -1,34 +1,77 @@
 package ru.hogwarts.school.service;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageRequest;
-import org.springframework.data.domain.Pageable;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.data.domain.Limit;
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
+import ru.hogwarts.school.cache.AvatarCache;
+import ru.hogwarts.school.cache.AvatarKey;
+import ru.hogwarts.school.dto.AvatarInfo;
+import ru.hogwarts.school.dto.CursorPage;
 import ru.hogwarts.school.model.Avatar;
 import ru.hogwarts.school.model.Student;
 import ru.hogwarts.school.repository.AvatarRepository;
 import ru.hogwarts.school.repository.StudentRepository;
+import ru.hogwarts.school.store.AvatarStore;
+import ru.hogwarts.school.store.AvatarStores;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.HexFormat;
+import java.util.List;
 import java.util.Optional;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 @Service
 public class AvatarService {
 
+    private static final Logger log = LoggerFactory.getLogger(AvatarService.class);
+
     private final AvatarRepository avatarRepository;
     private final StudentRepository studentRepository;
+    private final AvatarStore avatarStore;
+    private final AvatarCache avatarCache;
+    private final AvatarVariantService avatarVariantService;
     private final Path avatarDir;
+    private final int maxArchiveEntries;
+    private final TransactionTemplate releaseTransaction;
 
-    public AvatarService(AvatarRepository avatarRepository, StudentRepository studentRepository, @Value("${app.avatar.dir}") String avatarPath) {
+    public AvatarService(AvatarRepository avatarRepository, StudentRepository studentRepository, AvatarStores avatarStores, AvatarCache avatarCache, AvatarVariantService avatarVariantService,
+                         PlatformTransactionManager transactionManager, @Value("${app.avatar.dir}") String avatarPath, @Value("${app.avatar.archive.max-entries:500}") int maxArchiveEntries) {
         this.avatarRepository = avatarRepository;
         this.studentRepository = studentRepository;
+        this.avatarStore = avatarStores.active();
+        this.avatarCache = avatarCache;
+        this.avatarVariantService = avatarVariantService;
         this.avatarDir = Paths.get(avatarPath);
+        this.maxArchiveEntries = maxArchiveEntries;
+        // Освобождение содержимого идёт после коммита загрузки, поэтому в отдельной транзакции
+        this.releaseTransaction = new TransactionTemplate(transactionManager);
+        this.releaseTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
         try {
             Files.createDirectories(avatarDir);
         } catch (IOException e) {
@@ -38,49 +81,245 @@ public class AvatarService {
 
     @Transactional
     public Avatar uploadAvatar(Long studentId, MultipartFile file) throws IOException {
-        Student student = studentRepository.findById(studentId).orElseThrow(() -> new IllegalArgumentException("Студент с ID " + studentId + " не найден"));
+        if (!studentRepository.existsById(studentId)) {
+            throw new IllegalArgumentException("Студент с ID " + studentId + " не найден");
+        }
+        SpooledAvatar spooled = spool(file);
+        try {
+            return storeAvatar(studentId, spooled);
+        } finally {
+            Files.deleteIfExists(spooled.file());
+        }
+    }
 
-        if (!file.getContentType().startsWith("image/")) {
+    public SpooledAvatar spool(MultipartFile file) throws IOException {
+        if (file.getContentType() == null || !file.getContentType().startsWith("image/")) {
             throw new IllegalArgumentException("Файл должен быть изображением");
         }
 
-        byte[] bytes = file.getBytes();
-
-        Optional<Avatar> existingAvatar = avatarRepository.findByStudentId(studentId);
-        existingAvatar.ifPresent(avatar -> {
-            try {
-                Files.deleteIfExists(avatarDir.resolve(avatar.getFilePath()));
-            } catch (IOException e) {
-                e.printStackTrace();
+        Path tempFile = Files.createTempFile(avatarDir, "upload-", ".tmp");
+        try {
+            MessageDigest digest = sha256();
+            long size;
+            try (InputStream in = new DigestInputStream(file.getInputStream(), digest)) {
+                size = Files.copy(in, tempFile, StandardCopyOption.REPLACE_EXISTING);
             }
-            avatarRepository.delete(avatar);
-        });
+            return new SpooledAvatar(tempFile, HexFormat.of().formatHex(digest.digest()), size, file.getContentType());
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(tempFile);
+            throw e;
+        }
+    }
+
+    @Transactional
+    public Avatar storeAvatar(Long studentId, SpooledAvatar spooled) throws IOException {
+        Student student = studentRepository.findById(studentId).orElseThrow(() -> new IllegalArgumentException("Студент с ID " + studentId + " не найден"));
+        String hash = spooled.hash();
+
+        lockContent(hash);
+        if (!avatarStore.contains(hash)) {
+            avatarStore.save(hash, spooled.file());
+        }
 
-        String fileName = "avatar-" + studentId + "." + getFileExtension(file.getOriginalFilename());
-        Path filePath = avatarDir.resolve(fileName);
-        Files.write(filePath, bytes);
+        Avatar avatar = avatarRepository.findByStudentId(studentId).orElseGet(Avatar::new);
+        String previousHash = avatar.getContentHash();
+        String previousPath = avatar.getFilePath();
 
-        Avatar avatar = existingAvatar.orElse(new Avatar());
-        avatar.setFilePath(filePath.toString());
-        avatar.setFileSize(file.getSize());
-        avatar.setMediaType(file.getContentType());
-        avatar.setData(bytes);
+        avatar.setFilePath(avatarStore.location(hash));
+        avatar.setFileSize(spooled.size());
+        avatar.setMediaType(spooled.mediaType());
+        avatar.setContentHash(hash);
         avatar.setStudent(student);
-
-        return avatarRepository.save(avatar);
+        Avatar saved = avatarRepository.save(avatar);
+        afterCommit(() -> {
+            avatarVariantService.generateAsync(hash);
+            if (previousPath != null && !hash.equals(previousHash)) {
+                releaseContent(previousHash, previousPath);
+            }
+        });
+        return saved;
     }
 
     public Avatar findAvatar(Long studentId) {
         return avatarRepository.findByStudentId(studentId).orElseThrow(() -> new IllegalArgumentException("Аватар для студента с ID " + studentId + " не найден"));
     }
 
-    public Page<Avatar> getAllAvatars(int page, int size) {
-        Pageable pageable = PageRequest.of(page, size);
-        return avatarRepository.findAll(pageable);
+    public Optional<AvatarData> loadAvatar(Long studentId) throws IOException {
+        return loadAvatar(studentId, null);
     }
 
-    private String getFileExtension(String filename) {
-        int lastDot = filename.lastIndexOf('.');
-        return (lastDot == -1) ? "png" : filename.substring(lastDot + 1);
+    public Optional<AvatarData> loadAvatar(Long studentId, Integer size) throws IOException {
+        int variant = avatarVariantService.resolveSize(size);
+        Optional<Avatar> avatar = avatarRepository.findByStudentId(studentId);
+        return avatar.isPresent() ? loadContent(avatar.get(), variant, true) : Optional.empty();
+    }
+
+    // Вариант в ETag учитывается, только когда он уже сгенерирован: до этого отдаётся оригинал
+    public Optional<AvatarValidator> findValidator(Long studentId, Integer size) {
+        int variant = avatarVariantService.resolveSize(size);
+        return avatarRepository.findVersionByStudentId(studentId).map(avatar -> {
+            String hash = avatar.contentHash();
+            String etag;
+            if (hash == null) {
+                etag = "avatar-" + avatar.id() + "-" + avatar.version();
+            } else if (variant > 0 && avatarVariantService.hasVariant(hash, variant)) {
+                etag = hash + "-" + variant;
+            } else {
+                etag = hash;
+            }
+            return new AvatarValidator(etag, avatar.updatedAt());
+        });
+    }
+
+    public List<Avatar> findAvatarsForArchive(Collection<Long> studentIds, Long facultyId) {
+        List<Avatar> avatars;
+        if (studentIds != null && !studentIds.isEmpty()) {
+            if (studentIds.size() > maxArchiveEntries) {
+                throw new IllegalArgumentException("В архив можно выгрузить не больше " + maxArchiveEntries + " аватаров");
+            }
+            avatars = avatarRepository.findByStudentIdIn(studentIds);
+        } else if (facultyId != null) {
+            // Лишняя строка нужна только чтобы заметить превышение лимита, весь факультет не загружается
+            avatars = avatarRepository.findByStudentFacultyIdOrderById(facultyId, Limit.of(maxArchiveEntries + 1));
+        } else {
+            throw new IllegalArgumentException("Нужно указать studentIds или facultyId");
+        }
+        if (avatars.size() > maxArchiveEntries) {
+            throw new IllegalArgumentException("В архив можно выгрузить не больше " + maxArchiveEntries + " аватаров");
+        }
+        return avatars;
+    }
+
+    // Архив читает хранилище мимо кеша, чтобы разовая выгрузка не вытесняла часто запрашиваемые аватары
+    public void writeArchive(List<Avatar> avatars, Integer size, OutputStream out) throws IOException {
+        int variant = avatarVariantService.resolveSize(size);
+        ZipOutputStream zip = new ZipOutputStream(out);
+        zip.setLevel(Deflater.NO_COMPRESSION);
+        for (Avatar avatar : avatars) {
+            Long studentId = avatar.getStudent().getId();
+            Optional<AvatarData> data = loadContent(avatar, variant, false);
+            if (data.isEmpty()) {
+                continue;
+            }
+            zip.putNextEntry(new ZipEntry("avatar-" + studentId + "." + MediaType.parseMediaType(data.get().mediaType()).getSubtype()));
+            try (InputStream in = data.get().resource().getInputStream()) {
+                in.transferTo(zip);
+            }
+            zip.closeEntry();
+        }
+        zip.finish();
+    }
+
+    public CursorPage<AvatarInfo> getAllAvatars(String cursor, int limit) {
+        CursorPage.checkLimit(limit);
+        List<AvatarInfo> rows = avatarRepository.findInfoAfter(CursorPage.decode(cursor), Limit.of(limit + 1));
+        return CursorPage.of(rows, limit, AvatarInfo::id);
+    }
+
+    private AvatarData cache(AvatarKey key, String mediaType, Resource resource) throws IOException {
+        if (!avatarCache.accepts(resource.contentLength())) {
+            return new AvatarData(mediaType, resource);
+        }
+        byte[] data = resource.getContentAsByteArray();
+        avatarCache.put(key, mediaType, data);
+        return new AvatarData(mediaType, new ByteArrayResource(data));
+    }
+
+    // Кеш адресуется хешем: читатель, загрузивший строку до замены аватара, может положить в кеш
+    // только старое содержимое под старым хешем, и новый запрос его не получит
+    private Optional<AvatarData> loadContent(Avatar avatar, int variant, boolean cacheable) throws IOException {
+        String hash = avatar.getContentHash();
+        if (hash == null) {
+            Resource legacy = new FileSystemResource(avatar.getFilePath());
+            return legacy.isReadable() ? Optional.of(new AvatarData(avatar.getMediaType(), legacy)) : Optional.empty();
+        }
+        if (variant > 0) {
+            AvatarKey key = new AvatarKey(hash, variant);
+            Optional<AvatarCache.CachedAvatar> cached = cacheable ? avatarCache.get(key) : Optional.empty();
+            if (cached.isPresent()) {
+                return Optional.of(new AvatarData(AvatarVariantService.VARIANT_MEDIA_TYPE, cached.get().resource()));
+            }
+            Optional<Resource> resized = avatarVariantService.loadVariant(hash, variant);
+            if (resized.isPresent()) {
+                return Optional.of(cacheable
+                        ? cache(key, AvatarVariantService.VARIANT_MEDIA_TYPE, resized.get())
+                        : new AvatarData(AvatarVariantService.VARIANT_MEDIA_TYPE, resized.get()));
+            }
+        }
+        AvatarKey key = AvatarKey.original(hash);
+        Optional<AvatarCache.CachedAvatar> cached = cacheable ? avatarCache.get(key) : Optional.empty();
+        if (cached.isPresent()) {
+            return Optional.of(new AvatarData(avatar.getMediaType(), cached.get().resource()));
+        }
+        Optional<Resource> resource = avatarStore.load(hash);
+        if (resource.isEmpty()) {
+            return Optional.empty();
+        }
+        return Optional.of(cacheable
+                ? cache(key, avatar.getMediaType(), resource.get())
+                : new AvatarData(avatar.getMediaType(), resource.get()));
+    }
+
+    // Содержимое больше ни на что не ссылается: записи кеша освобождают память, на корректность они не влияют
+    private void evictContent(String hash) {
+        avatarCache.invalidate(AvatarKey.original(hash));
+        for (int size : avatarVariantService.sizes()) {
+            avatarCache.invalidate(new AvatarKey(hash, size));
+        }
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    // Вызывается после коммита: откат загрузки не должен оставить старую ссылку на удалённое содержимое
+    private void releaseContent(String hash, String filePath) {
+        try {
+            if (hash == null) {
+                Files.deleteIfExists(Paths.get(filePath));
+                return;
+            }
+            releaseTransaction.executeWithoutResult(status -> {
+                lockContent(hash);
+                if (avatarRepository.existsByContentHash(hash)) {
+                    return;
+                }
+                try {
+                    avatarStore.delete(hash);
+                    avatarVariantService.deleteVariants(hash);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                evictContent(hash);
+            });
+        } catch (IOException | RuntimeException e) {
+            log.warn("Не удалось удалить содержимое аватара {}", hash != null ? hash : filePath, e);
+        }
+    }
+
+    private void lockContent(String hash) {
+        avatarRepository.lockContent(contentLockKey(hash));
+    }
+
+    // Ключ блокировки — первые 64 бита SHA-256 содержимого
+    static long contentLockKey(String hash) {
+        return Long.parseUnsignedLong(hash.substring(0, 16), 16);
+    }
+
+    static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Алгоритм SHA-256 недоступен", e);
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,317 @@
+package ru.hogwarts.school.service;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.hogwarts.school.model.Avatar;
+import ru.hogwarts.school.repository.AvatarRepository;
+import ru.hogwarts.school.store.AvatarStore;
+import ru.hogwarts.school.store.AvatarStoreMode;
+import ru.hogwarts.school.store.AvatarStores;
+import ru.hogwarts.school.store.BlobResource;
+import ru.hogwarts.school.store.FileAvatarStore;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Перенос аватаров между хранилищами и перераскладка файлового хранилища.
+ * Обе задачи выполняются в фоне по очереди в одном потоке, статус запрашивается по тикету.
+ */
+@Service
+public class AvatarStoreMigrator {
+
+    private static final Logger log = LoggerFactory.getLogger(AvatarStoreMigrator.class);
+    private static final String LEGACY_DATA_QUERY = "SELECT data FROM avatar WHERE id = ? AND data IS NOT NULL";
+
+    private final AvatarRepository avatarRepository;
+    private final AvatarStores avatarStores;
+    private final FileAvatarStore fileAvatarStore;
+    private final DataSource dataSource;
+    private final TransactionTemplate transactionTemplate;
+    private final Path avatarDir;
+    private final Duration reshardTimeout;
+    private final ExecutorService executor;
+    // Последние запущенные задачи; одновременно выполняется не больше одной задачи каждого вида
+    private final AtomicReference<MigrationStatus> migrationStatus = new AtomicReference<>();
+    private final AtomicReference<ReshardStatus> reshardStatus = new AtomicReference<>();
+    private volatile Boolean legacyDataColumn;
+
+    public AvatarStoreMigrator(AvatarRepository avatarRepository, AvatarStores avatarStores, FileAvatarStore fileAvatarStore, DataSource dataSource,
+                               PlatformTransactionManager transactionManager, @Value("${app.avatar.dir}") String avatarPath,
+                               @Value("${app.avatar.reshard.timeout:1h}") Duration reshardTimeout) {
+        this.avatarRepository = avatarRepository;
+        this.avatarStores = avatarStores;
+        this.fileAvatarStore = fileAvatarStore;
+        this.dataSource = dataSource;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.avatarDir = Paths.get(avatarPath);
+        this.reshardTimeout = reshardTimeout;
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "avatar-store-jobs");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public MigrationStatus startMigration(AvatarStoreMode from, AvatarStoreMode to, int batchSize, boolean deleteSource) {
+        if (from == to) {
+            throw new IllegalArgumentException("Исходное и целевое хранилище совпадают");
+        }
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Размер пачки должен быть больше нуля");
+        }
+        MigrationStatus started = new MigrationStatus(UUID.randomUUID(), JobState.RUNNING, null, null, Instant.now());
+        claim(migrationStatus, started, "Перенос аватаров уже выполняется");
+        executor.execute(() -> {
+            try {
+                MigrationReport report = migrate(from, to, batchSize, deleteSource);
+                log.info("Перенос аватаров из {} в {}: старых {}, перенесено {}, пропущено {}, ошибок {}",
+                        from, to, report.legacy(), report.migrated(), report.skipped(), report.failed());
+                migrationStatus.set(started.with(JobState.DONE, report, null));
+            } catch (RuntimeException e) {
+                log.warn("Перенос аватаров {} не выполнен", started.ticket(), e);
+                migrationStatus.set(started.with(JobState.FAILED, null, e.getMessage()));
+            }
+        });
+        return started;
+    }
+
+    public Optional<MigrationStatus> getMigrationStatus(UUID ticket) {
+        return Optional.ofNullable(migrationStatus.get()).filter(status -> status.ticket().equals(ticket));
+    }
+
+    /**
+     * Сначала переводит старые аватары без хеша (байты в файле avatar-{id}.ext или в колонке avatar.data)
+     * в целевое хранилище, затем переносит содержимое по хешам из исходного хранилища в целевое.
+     */
+    MigrationReport migrate(AvatarStoreMode from, AvatarStoreMode to, int batchSize, boolean deleteSource) {
+        AvatarStore source = avatarStores.get(from);
+        AvatarStore target = avatarStores.get(to);
+
+        long legacy = 0;
+        long migrated = 0;
+        long skipped = 0;
+        long failed = 0;
+        // Перенесённые строки получают хеш и выпадают из выборки, поэтому курсор двигается только мимо ошибок
+        long legacyAfter = 0;
+        List<Avatar> legacyBatch;
+        do {
+            legacyBatch = avatarRepository.findByContentHashIsNullAndIdGreaterThanOrderById(legacyAfter, Limit.of(batchSize));
+            for (Avatar avatar : legacyBatch) {
+                try {
+                    migrateLegacy(avatar, target, deleteSource);
+                    legacy++;
+                } catch (IOException | RuntimeException e) {
+                    failed++;
+                    legacyAfter = avatar.getId();
+                    log.warn("Не удалось перенести старый аватар {} в {}", avatar.getId(), to, e);
+                }
+            }
+        } while (legacyBatch.size() == batchSize);
+
+        String after = "";
+        List<String> batch;
+        do {
+            batch = avatarRepository.findContentHashesAfter(after, Limit.of(batchSize));
+            for (String hash : batch) {
+                try {
+                    if (copy(hash, source, target)) {
+                        migrated++;
+                    } else {
+                        skipped++;
+                    }
+                    if (deleteSource && from != AvatarStoreMode.DUAL && to != AvatarStoreMode.DUAL) {
+                        source.delete(hash);
+                    }
+                } catch (IOException | RuntimeException e) {
+                    failed++;
+                    log.warn("Не удалось перенести аватар {} из {} в {}", hash, from, to, e);
+                }
+            }
+            if (!batch.isEmpty()) {
+                after = batch.get(batch.size() - 1);
+            }
+        } while (batch.size() == batchSize);
+
+        return new MigrationReport(from, to, legacy, migrated, skipped, failed);
+    }
+
+    public ReshardStatus startReshard(int threads) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("Количество потоков должно быть больше нуля");
+        }
+        ReshardStatus started = new ReshardStatus(UUID.randomUUID(), JobState.RUNNING, null, null, Instant.now());
+        claim(reshardStatus, started, "Перераскладка хранилища уже выполняется");
+        executor.execute(() -> reshard(started, threads));
+        return started;
+    }
+
+    public Optional<ReshardStatus> getReshardStatus(UUID ticket) {
+        return Optional.ofNullable(reshardStatus.get()).filter(status -> status.ticket().equals(ticket));
+    }
+
+    private void reshard(ReshardStatus started, int threads) {
+        try {
+            FileAvatarStore.ReshardReport report = fileAvatarStore.reshard(threads, reshardTimeout);
+            log.info("Перераскладка аватаров на глубину {}: перенесено {}, пропущено {}, ошибок {}", report.shardDepth(), report.moved(), report.skipped(), report.failed());
+            reshardStatus.set(started.with(JobState.DONE, report, null));
+        } catch (IOException | RuntimeException e) {
+            log.warn("Перераскладка аватаров {} не выполнена", started.ticket(), e);
+            reshardStatus.set(started.with(JobState.FAILED, null, e.getMessage()));
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private static <T extends JobStatus> void claim(AtomicReference<T> status, T started, String busyMessage) {
+        T current;
+        do {
+            current = status.get();
+            if (current != null && current.state() == JobState.RUNNING) {
+                throw new IllegalStateException(busyMessage);
+            }
+        } while (!status.compareAndSet(current, started));
+    }
+
+    // Хеш считается при копировании во временный файл; строка обновляется под той же блокировкой по хешу,
+    // что и загрузка, поэтому параллельное освобождение того же содержимого его не удалит
+    private void migrateLegacy(Avatar avatar, AvatarStore target, boolean deleteSource) throws IOException {
+        Path legacyFile = avatar.getFilePath() != null ? Paths.get(avatar.getFilePath()) : null;
+        boolean fromFile = legacyFile != null && Files.isReadable(legacyFile);
+        Resource resource;
+        if (fromFile) {
+            resource = new FileSystemResource(legacyFile);
+        } else if (hasLegacyDataColumn()) {
+            resource = new BlobResource(dataSource, LEGACY_DATA_QUERY, avatar.getId(), avatar.getFileSize());
+        } else {
+            throw new IOException("Содержимое аватара " + avatar.getId() + " не найдено: нет файла " + avatar.getFilePath() + " и колонки avatar.data");
+        }
+
+        Path tempFile = Files.createTempFile(avatarDir, "migrate-", ".tmp");
+        try {
+            MessageDigest digest = AvatarService.sha256();
+            long size;
+            try (InputStream in = new DigestInputStream(resource.getInputStream(), digest)) {
+                size = Files.copy(in, tempFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+            String hash = HexFormat.of().formatHex(digest.digest());
+            transactionTemplate.executeWithoutResult(status -> {
+                avatarRepository.lockContent(AvatarService.contentLockKey(hash));
+                try {
+                    if (!target.contains(hash)) {
+                        target.save(hash, tempFile);
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                avatar.setContentHash(hash);
+                avatar.setFilePath(target.location(hash));
+                avatar.setFileSize(size);
+                avatarRepository.save(avatar);
+                if (deleteSource && hasLegacyDataColumn()) {
+                    avatarRepository.releaseLegacyData(avatar.getId());
+                }
+            });
+            if (deleteSource && fromFile) {
+                Files.deleteIfExists(legacyFile);
+            }
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    // Колонка avatar.data есть только на базе, обновлённой со старой схемы
+    private boolean hasLegacyDataColumn() {
+        Boolean exists = legacyDataColumn;
+        if (exists == null) {
+            try (Connection connection = dataSource.getConnection();
+                 ResultSet columns = connection.getMetaData().getColumns(null, null, "avatar", "data")) {
+                exists = columns.next();
+            } catch (SQLException e) {
+                throw new IllegalStateException("Не удалось проверить колонку avatar.data", e);
+            }
+            legacyDataColumn = exists;
+        }
+        return exists;
+    }
+
+    private boolean copy(String hash, AvatarStore source, AvatarStore target) throws IOException {
+        if (target.contains(hash)) {
+            return false;
+        }
+        Optional<Resource> resource = source.load(hash);
+        if (resource.isEmpty()) {
+            throw new IOException("Аватар " + hash + " отсутствует в исходном хранилище");
+        }
+        Path tempFile = Files.createTempFile(avatarDir, "migrate-", ".tmp");
+        try {
+            try (InputStream in = resource.get().getInputStream()) {
+                Files.copy(in, tempFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+            target.save(hash, tempFile);
+            return true;
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    public record MigrationReport(AvatarStoreMode from, AvatarStoreMode to, long legacy, long migrated, long skipped, long failed) {
+    }
+
+    public enum JobState {
+        RUNNING,
+        DONE,
+        FAILED
+    }
+
+    public interface JobStatus {
+        UUID ticket();
+
+        JobState state();
+    }
+
+    public record MigrationStatus(UUID ticket, JobState state, MigrationReport report, String error, Instant updatedAt) implements JobStatus {
+
+        MigrationStatus with(JobState state, MigrationReport report, String error) {
+            return new MigrationStatus(ticket, state, report, error, Instant.now());
+        }
+    }
+
+    public record ReshardStatus(UUID ticket, JobState state, FileAvatarStore.ReshardReport report, String error, Instant updatedAt) implements JobStatus {
+
+        ReshardStatus with(JobState state, FileAvatarStore.ReshardReport report, String error) {
+            return new ReshardStatus(ticket, state, report, error, Instant.now());
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package ru.hogwarts.school.service;
+
+import java.time.Instant;
+
+/**
+ * Данные для условного GET: ETag и время изменения аватара, известные без чтения его содержимого.
+ */
+public record AvatarValidator(String etag, Instant lastModified) {
+}
@@ -0,0 +1,214 @@
+package ru.hogwarts.school.service;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Service;
+import ru.hogwarts.school.store.AvatarStore;
+import ru.hogwarts.school.store.AvatarStoreMode;
+import ru.hogwarts.school.store.AvatarStores;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Превью аватаров. Оригинал читается из активного хранилища, а превью всегда лежат в файловом:
+ * их можно пересоздать из оригинала, а ключ {@code <hash>-<size>} не помещается в avatar_content.hash.
+ */
+@Service
+public class AvatarVariantService {
+
+    public static final String VARIANT_MEDIA_TYPE = "image/jpeg";
+
+    private static final Logger log = LoggerFactory.getLogger(AvatarVariantService.class);
+
+    private final AvatarStore avatarStore;
+    private final AvatarStore variantStore;
+    private final Path avatarDir;
+    private final List<Integer> sizes;
+    private final float quality;
+    private final long maxPixels;
+    private final ThreadPoolExecutor executor;
+
+    public AvatarVariantService(AvatarStores avatarStores,
+                                @Value("${app.avatar.dir}") String avatarPath,
+                                @Value("${app.avatar.variants.sizes:64,128,256}") List<Integer> sizes,
+                                @Value("${app.avatar.variants.quality:0.85}") float quality,
+                                @Value("${app.avatar.variants.max-pixels:16000000}") long maxPixels,
+                                @Value("${app.avatar.variants.threads:2}") int threads,
+                                @Value("${app.avatar.variants.queue-capacity:100}") int queueCapacity) {
+        this.avatarStore = avatarStores.active();
+        this.variantStore = avatarStores.get(AvatarStoreMode.FILE);
+        this.avatarDir = Paths.get(avatarPath);
+        this.sizes = sizes.stream().sorted().toList();
+        this.quality = quality;
+        this.maxPixels = maxPixels;
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+            Thread thread = new Thread(runnable, "avatar-variants-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public List<Integer> sizes() {
+        return sizes;
+    }
+
+    // Наименьший настроенный размер, не меньше запрошенного; 0 — оригинал
+    public int resolveSize(Integer requested) {
+        if (requested == null || requested <= 0) {
+            return 0;
+        }
+        for (int size : sizes) {
+            if (size >= requested) {
+                return size;
+            }
+        }
+        return 0;
+    }
+
+    private static String variantKey(String contentHash, int size) {
+        return contentHash + "-" + size;
+    }
+
+    public boolean hasVariant(String contentHash, int size) {
+        return variantStore.contains(variantKey(contentHash, size));
+    }
+
+    public Optional<Resource> loadVariant(String contentHash, int size) throws IOException {
+        return variantStore.load(variantKey(contentHash, size));
+    }
+
+    public void generateAsync(String contentHash) {
+        try {
+            executor.execute(() -> generate(contentHash));
+        } catch (RejectedExecutionException e) {
+            log.warn("Очередь генерации превью переполнена, аватар {} будет отдаваться в исходном размере", contentHash);
+        }
+    }
+
+    public void deleteVariants(String contentHash) throws IOException {
+        for (int size : sizes) {
+            variantStore.delete(variantKey(contentHash, size));
+        }
+    }
+
+    void generate(String contentHash) {
+        try {
+            if (sizes.stream().allMatch(size -> hasVariant(contentHash, size))) {
+                return;
+            }
+            Optional<Resource> original = avatarStore.load(contentHash);
+            if (original.isEmpty()) {
+                return;
+            }
+            BufferedImage image;
+            try (InputStream in = original.get().getInputStream()) {
+                image = decode(in);
+            }
+            if (image == null) {
+                log.info("Формат аватара {} не поддерживается, превью не созданы", contentHash);
+                return;
+            }
+            for (int size : sizes) {
+                if (!hasVariant(contentHash, size)) {
+                    writeVariant(variantKey(contentHash, size), resize(image, size));
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            log.warn("Превью для аватара {} не созданы: {}", contentHash, e.getMessage());
+        } catch (IOException | RuntimeException e) {
+            log.warn("Не удалось создать превью для аватара {}", contentHash, e);
+        }
+    }
+
+    // Размеры берутся из заголовка до декодирования: маленький файл может объявить картинку на гигабайты
+    BufferedImage decode(InputStream in) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(in)) {
+            Iterator<ImageReader> readers = input != null ? ImageIO.getImageReaders(input) : null;
+            if (readers == null || !readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                if ((long) width * height > maxPixels) {
+                    throw new IllegalArgumentException("Изображение " + width + "x" + height + " больше допустимых " + maxPixels + " пикселей");
+                }
+                return reader.read(0);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private BufferedImage resize(BufferedImage image, int size) {
+        double scale = Math.min(1.0, (double) size / Math.max(image.getWidth(), image.getHeight()));
+        int width = Math.max(1, (int) Math.round(image.getWidth() * scale));
+        int height = Math.max(1, (int) Math.round(image.getHeight() * scale));
+
+        BufferedImage result = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = result.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.setColor(Color.WHITE);
+            graphics.fillRect(0, 0, width, height);
+            graphics.drawImage(image, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+        return result;
+    }
+
+    private void writeVariant(String key, BufferedImage image) throws IOException {
+        Path tempFile = Files.createTempFile(avatarDir, "variant-", ".tmp");
+        try {
+            ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+            try (ImageOutputStream out = ImageIO.createImageOutputStream(tempFile.toFile())) {
+                writer.setOutput(out);
+                ImageWriteParam param = writer.getDefaultWriteParam();
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                param.setCompressionQuality(quality);
+                writer.write(null, new IIOImage(image, null, null), param);
+            } finally {
+                writer.dispose();
+            }
+            variantStore.save(key, tempFile);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
@@ -1,35 +1,85 @@
 package ru.hogwarts.school.service;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import ru.hogwarts.school.dto.AgeStats;
+import ru.hogwarts.school.dto.CursorPage;
+import ru.hogwarts.school.dto.FacultyAgeCount;
+import ru.hogwarts.school.dto.FacultyStats;
+import ru.hogwarts.school.dto.StudentDto;
+import ru.hogwarts.school.event.FacultyChangedEvent;
 import ru.hogwarts.school.model.Faculty;
-import ru.hogwarts.school.model.Student;
 import ru.hogwarts.school.repository.FacultyRepository;
 import ru.hogwarts.school.repository.StudentRepository;
 
+import java.time.Duration;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.SortedMap;
+import java.util.TreeMap;
 
 @Service
 public class FacultyService {
 
     private final FacultyRepository facultyRepository;
     private final StudentRepository studentRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final Cache<String, List<FacultyStats>> statsCache;
 
-    public FacultyService(FacultyRepository facultyRepository, StudentRepository studentRepository) {
+    public FacultyService(FacultyRepository facultyRepository, StudentRepository studentRepository, ApplicationEventPublisher eventPublisher,
+                          @Value("${app.faculties.stats.ttl:10s}") Duration statsTtl) {
         this.facultyRepository = facultyRepository;
         this.studentRepository = studentRepository;
+        this.eventPublisher = eventPublisher;
+        this.statsCache = statsTtl.isZero() ? null : Caffeine.newBuilder().expireAfterWrite(statsTtl).maximumSize(1).build();
     }
 
     public Faculty addFaculty(Faculty faculty) {
-        return facultyRepository.save(faculty);
+        Faculty saved = facultyRepository.save(faculty);
+        eventPublisher.publishEvent(new FacultyChangedEvent(saved.getId()));
+        return saved;
     }
 
     public Optional<Faculty> getFaculty(Long id) {
         return facultyRepository.findById(id);
     }
 
-    public Collection<Faculty> getAllFaculties() {
-        return facultyRepository.findAll();
+    public Optional<Faculty> getFacultyWithStudents(Long id) {
+        return facultyRepository.findWithStudentsById(id);
+    }
+
+    // Студенты всех факультетов страницы подгружаются одним дополнительным запросом.
+    // Факультет, удалённый между запросами, не отдаётся без студентов: вне транзакции их уже не подгрузить
+    public CursorPage<Faculty> getAllFacultiesWithStudents(String cursor, int limit) {
+        CursorPage<Faculty> page = getAllFaculties(cursor, limit);
+        if (page.items().isEmpty()) {
+            return page;
+        }
+        Map<Long, Faculty> loaded = new HashMap<>();
+        for (Faculty faculty : facultyRepository.findWithStudentsByIdIn(page.items().stream().map(Faculty::getId).toList())) {
+            loaded.put(faculty.getId(), faculty);
+        }
+        return page.map(faculty -> {
+            Faculty withStudents = loaded.get(faculty.getId());
+            if (withStudents == null) {
+                throw new IllegalStateException("Факультет " + faculty.getId() + " удалён во время чтения страницы");
+            }
+            return withStudents;
+        });
+    }
+
+    public CursorPage<Faculty> getAllFaculties(String cursor, int limit) {
+        CursorPage.checkLimit(limit);
+        List<Faculty> rows = facultyRepository.findByIdGreaterThanOrderByIdAsc(CursorPage.decode(cursor), Limit.of(limit + 1));
+        return CursorPage.of(rows, limit, Faculty::getId);
     }
 
     public Collection<Faculty> getFacultyByColor(String color) {
@@ -40,22 +90,47 @@ public class FacultyService {
         return facultyRepository.findByNameIgnoreCaseOrColorIgnoreCase(query, query);
     }
 
-    public Collection<Student> getStudentsByFacultyId(Long facultyId) {
-        return studentRepository.findByFacultyId(facultyId);
+    public List<StudentDto> getStudentsByFacultyId(Long facultyId) {
+        return studentRepository.findDtosByFacultyId(facultyId);
+    }
+
+    public List<FacultyStats> getFacultyStats() {
+        return statsCache != null ? statsCache.get("all", key -> loadFacultyStats()) : loadFacultyStats();
+    }
+
+    private List<FacultyStats> loadFacultyStats() {
+        Map<Long, String> names = new LinkedHashMap<>();
+        Map<Long, SortedMap<Integer, Long>> histograms = new HashMap<>();
+        for (FacultyAgeCount row : facultyRepository.countStudentsByFacultyAndAge()) {
+            names.putIfAbsent(row.facultyId(), row.facultyName());
+            SortedMap<Integer, Long> histogram = histograms.computeIfAbsent(row.facultyId(), id -> new TreeMap<>());
+            if (row.age() != null) {
+                histogram.put(row.age(), row.count());
+            }
+        }
+        return names.entrySet().stream()
+                .map(faculty -> new FacultyStats(faculty.getKey(), faculty.getValue(), AgeStats.of(histograms.get(faculty.getKey()))))
+                .toList();
     }
 
     public Optional<Faculty> updateFaculty(Faculty faculty) {
-        if (faculty.getId() == null || !facultyRepository.existsById(faculty.getId())) {
+        if (faculty.getId() == null) {
             return Optional.empty();
         }
-        Faculty updated = facultyRepository.save(faculty);
-        return Optional.of(updated);
+        return facultyRepository.findById(faculty.getId()).map(existing -> {
+            existing.setName(faculty.getName());
+            existing.setColor(faculty.getColor());
+            Faculty updated = facultyRepository.save(existing);
+            eventPublisher.publishEvent(new FacultyChangedEvent(updated.getId()));
+            return updated;
+        });
     }
 
     public Optional<Faculty> deleteFaculty(Long id) {
         Optional<Faculty> faculty = facultyRepository.findById(id);
         if (faculty.isPresent()) {
             facultyRepository.deleteById(id);
+            eventPublisher.publishEvent(new FacultyChangedEvent(id));
         }
         return faculty;
     }
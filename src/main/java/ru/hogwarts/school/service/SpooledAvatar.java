@@ -0,0 +1,6 @@
+package ru.hogwarts.school.service;
+
+import java.nio.file.Path;
+
+public record SpooledAvatar(Path file, String hash, long size, String mediaType) {
+}
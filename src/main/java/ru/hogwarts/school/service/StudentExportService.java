@@ -0,0 +1,54 @@
+package ru.hogwarts.school.service;
+
+import jakarta.persistence.EntityManager;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import ru.hogwarts.school.model.Student;
+import ru.hogwarts.school.repository.StudentRepository;
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.ObjectWriter;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+@Service
+public class StudentExportService {
+
+    private final StudentRepository studentRepository;
+    private final EntityManager entityManager;
+    private final ObjectWriter writer;
+
+    public StudentExportService(StudentRepository studentRepository, EntityManager entityManager, ObjectMapper objectMapper) {
+        this.studentRepository = studentRepository;
+        this.entityManager = entityManager;
+        this.writer = objectMapper.writerFor(Student.class);
+    }
+
+    // Пишет всех студентов в формате NDJSON: по одному JSON-объекту на строку
+    @Transactional(readOnly = true)
+    public long exportStudents(OutputStream target, boolean gzip) throws IOException {
+        GZIPOutputStream compressed = gzip ? new GZIPOutputStream(target, 8192) : null;
+        OutputStream out = new BufferedOutputStream(compressed != null ? compressed : target, 8192);
+        long count = 0;
+        try (Stream<Student> students = studentRepository.streamAll()) {
+            Iterator<Student> iterator = students.iterator();
+            while (iterator.hasNext()) {
+                out.write(writer.writeValueAsBytes(iterator.next()));
+                out.write('\n');
+                if (++count % StudentRepository.EXPORT_FETCH_SIZE == 0) {
+                    entityManager.clear();
+                    out.flush();
+                }
+            }
+        }
+        out.flush();
+        if (compressed != null) {
+            compressed.finish();
+        }
+        return count;
+    }
+}
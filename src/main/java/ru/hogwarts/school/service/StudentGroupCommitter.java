@@ -0,0 +1,196 @@
+package ru.hogwarts.school.service;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.hogwarts.school.event.StudentChangedEvent;
+import ru.hogwarts.school.event.StudentSnapshot;
+import ru.hogwarts.school.model.Student;
+import ru.hogwarts.school.repository.StudentRepository;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Групповая запись новых студентов: запросы копятся до {@code max-batch} штук или {@code max-delay},
+ * после чего вставляются одной пачкой в одной транзакции. Включается {@code app.students.group-commit.enabled}.
+ */
+@Service
+public class StudentGroupCommitter {
+
+    private static final Logger log = LoggerFactory.getLogger(StudentGroupCommitter.class);
+
+    private final StudentRepository studentRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final boolean enabled;
+    private final int maxBatch;
+    private final long maxDelayNanos;
+    private final Duration submitTimeout;
+    private final BlockingQueue<PendingStudent> queue;
+    private final Thread flusher;
+    private volatile boolean running;
+
+    public StudentGroupCommitter(StudentRepository studentRepository,
+                                 PlatformTransactionManager transactionManager,
+                                 ApplicationEventPublisher eventPublisher,
+                                 @Value("${app.students.group-commit.enabled:false}") boolean enabled,
+                                 @Value("${app.students.group-commit.max-batch:100}") int maxBatch,
+                                 @Value("${app.students.group-commit.max-delay:5ms}") Duration maxDelay,
+                                 @Value("${app.students.group-commit.queue-capacity:10000}") int queueCapacity,
+                                 @Value("${app.students.group-commit.submit-timeout:2s}") Duration submitTimeout) {
+        this.studentRepository = studentRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        // Захваченную запись клиент ждёт до конца транзакции, поэтому её длительность тоже ограничена
+        this.transactionTemplate.setTimeout((int) Math.max(1, submitTimeout.toSeconds()));
+        this.eventPublisher = eventPublisher;
+        this.enabled = enabled;
+        this.maxBatch = maxBatch;
+        this.maxDelayNanos = maxDelay.toNanos();
+        this.submitTimeout = submitTimeout;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.running = enabled;
+        if (enabled) {
+            this.flusher = new Thread(this::run, "student-group-commit");
+            this.flusher.setDaemon(true);
+            this.flusher.start();
+        } else {
+            this.flusher = null;
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public Duration submitTimeout() {
+        return submitTimeout;
+    }
+
+    // Если поток записи не взял студента за submit-timeout, ожидание завершается TimeoutException,
+    // а студент не будет записан. Взятого в транзакцию студента клиент дожидается до её завершения
+    public CompletableFuture<Student> submit(Student student) {
+        PendingStudent pending = new PendingStudent(student);
+        if (!running || !queue.offer(pending)) {
+            throw new RejectedExecutionException("Очередь групповой записи студентов недоступна");
+        }
+        CompletableFuture.delayedExecutor(submitTimeout.toMillis(), TimeUnit.MILLISECONDS).execute(pending::abandon);
+        return pending.future();
+    }
+
+    private void run() {
+        List<PendingStudent> batch = new ArrayList<>(maxBatch);
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingStudent first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + maxDelayNanos;
+                while (batch.size() < maxBatch) {
+                    long remaining = deadline - System.nanoTime();
+                    PendingStudent next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                flush(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void flush(List<PendingStudent> batch) {
+        List<PendingStudent> claimed = new ArrayList<>(batch.size());
+        try {
+            List<Student> saved = transactionTemplate.execute(status -> {
+                // Судьба записи решается здесь: студент, чей клиент уже получил таймаут, не пишется,
+                // а захваченного клиент больше не может бросить
+                batch.stream().filter(PendingStudent::claim).forEach(claimed::add);
+                if (claimed.isEmpty()) {
+                    return List.<Student>of();
+                }
+                List<Student> students = studentRepository.saveAll(claimed.stream().map(PendingStudent::student).toList());
+                students.forEach(student -> eventPublisher.publishEvent(StudentChangedEvent.created(StudentSnapshot.of(student))));
+                return students;
+            });
+            for (int i = 0; i < claimed.size(); i++) {
+                claimed.get(i).future().complete(saved.get(i));
+            }
+        } catch (RuntimeException e) {
+            log.warn("Не удалось записать пачку из {} студентов, повторяем по одному", batch.size(), e);
+            for (PendingStudent pending : batch) {
+                // id мог быть выдан в откатившейся транзакции
+                pending.student().setId(null);
+                try {
+                    Student saved = transactionTemplate.execute(status -> {
+                        if (!pending.claim()) {
+                            return null;
+                        }
+                        Student student = studentRepository.save(pending.student());
+                        eventPublisher.publishEvent(StudentChangedEvent.created(StudentSnapshot.of(student)));
+                        return student;
+                    });
+                    if (saved != null) {
+                        pending.future().complete(saved);
+                    }
+                } catch (RuntimeException rowError) {
+                    pending.future().completeExceptionally(rowError);
+                }
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        running = false;
+        if (flusher != null) {
+            flusher.join(TimeUnit.SECONDS.toMillis(10));
+        }
+        PendingStudent pending;
+        while ((pending = queue.poll()) != null) {
+            pending.future().completeExceptionally(new RejectedExecutionException("Приложение останавливается"));
+        }
+    }
+
+    private enum PendingState {
+        PENDING, CLAIMED, ABANDONED
+    }
+
+    private record PendingStudent(Student student, CompletableFuture<Student> future, AtomicReference<PendingState> state) {
+
+        PendingStudent(Student student) {
+            this(student, new CompletableFuture<>(), new AtomicReference<>(PendingState.PENDING));
+        }
+
+        // Повторный захват после отката пачки тоже успешен
+        boolean claim() {
+            return state.compareAndSet(PendingState.PENDING, PendingState.CLAIMED) || state.get() == PendingState.CLAIMED;
+        }
+
+        void abandon() {
+            if (state.compareAndSet(PendingState.PENDING, PendingState.ABANDONED)) {
+                future.completeExceptionally(new TimeoutException());
+            }
+        }
+    }
+}
@@ -0,0 +1,248 @@
+package ru.hogwarts.school.service;
+
+import jakarta.persistence.CacheStoreMode;
+import jakarta.persistence.EntityManager;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.hogwarts.school.dto.ImportReport;
+import ru.hogwarts.school.dto.ImportReport.RowError;
+import ru.hogwarts.school.dto.StudentImportRow;
+import ru.hogwarts.school.event.StudentChangedEvent;
+import ru.hogwarts.school.event.StudentSnapshot;
+import ru.hogwarts.school.model.Faculty;
+import ru.hogwarts.school.model.Student;
+import ru.hogwarts.school.repository.FacultyRepository;
+import tools.jackson.core.JacksonException;
+import tools.jackson.databind.MappingIterator;
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.ObjectReader;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Массовый импорт студентов из CSV или JSON. Строки читаются потоком и вставляются пачками по
+ * {@code app.students.import.chunk-size}, каждая пачка — в своей транзакции.
+ */
+@Service
+public class StudentImportService {
+
+    private final EntityManager entityManager;
+    private final FacultyRepository facultyRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ObjectReader rowReader;
+    private final int chunkSize;
+    private final int maxErrors;
+
+    public StudentImportService(EntityManager entityManager,
+                                FacultyRepository facultyRepository,
+                                PlatformTransactionManager transactionManager,
+                                ApplicationEventPublisher eventPublisher,
+                                ObjectMapper objectMapper,
+                                @Value("${app.students.import.chunk-size:1000}") int chunkSize,
+                                @Value("${app.students.import.max-errors:100}") int maxErrors) {
+        this.entityManager = entityManager;
+        this.facultyRepository = facultyRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.eventPublisher = eventPublisher;
+        this.rowReader = objectMapper.readerFor(StudentImportRow.class);
+        this.chunkSize = chunkSize;
+        this.maxErrors = maxErrors;
+    }
+
+    // Ожидается заголовок с колонками name и age; facultyId необязательна
+    public ImportReport importCsv(InputStream in) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        String header = reader.readLine();
+        if (header == null) {
+            return new ImportReport(0, 0, List.of());
+        }
+        Map<String, Integer> columns = new HashMap<>();
+        List<String> names = parseCsvLine(header.replace("\uFEFF", ""));
+        for (int i = 0; i < names.size(); i++) {
+            columns.put(names.get(i).trim().toLowerCase(Locale.ROOT), i);
+        }
+        if (!columns.containsKey("name") || !columns.containsKey("age")) {
+            throw new IllegalArgumentException("В заголовке CSV должны быть колонки name и age");
+        }
+
+        Importer importer = new Importer();
+        long row = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            row++;
+            if (line.isBlank()) {
+                continue;
+            }
+            try {
+                List<String> fields = parseCsvLine(line);
+                String age = field(fields, columns.get("age"));
+                String facultyId = field(fields, columns.get("facultyid"));
+                importer.add(row, new StudentImportRow(
+                        field(fields, columns.get("name")),
+                        age == null ? null : Integer.valueOf(age),
+                        facultyId == null ? null : Long.valueOf(facultyId)));
+            } catch (IllegalArgumentException e) {
+                importer.reject(row, "Некорректная строка: " + e.getMessage());
+            }
+        }
+        return importer.finish();
+    }
+
+    // Принимает как JSON-массив объектов, так и NDJSON
+    public ImportReport importJson(InputStream in) throws IOException {
+        Importer importer = new Importer();
+        long row = 0;
+        try (MappingIterator<StudentImportRow> rows = rowReader.readValues(in)) {
+            while (rows.hasNextValue()) {
+                row++;
+                importer.add(row, rows.nextValue());
+            }
+        } catch (JacksonException e) {
+            importer.reject(row + 1, "Некорректный JSON: " + e.getOriginalMessage());
+        }
+        return importer.finish();
+    }
+
+    private void insert(List<PendingRow> rows) {
+        // Импортированные строки не кладём в кэш второго уровня, чтобы не вытеснять из него рабочие данные
+        entityManager.setCacheStoreMode(CacheStoreMode.BYPASS);
+        List<Student> students = new ArrayList<>(rows.size());
+        for (PendingRow row : rows) {
+            Student student = new Student(row.data().name(), row.data().age());
+            if (row.data().facultyId() != null) {
+                student.setFaculty(entityManager.getReference(Faculty.class, row.data().facultyId()));
+            }
+            entityManager.persist(student);
+            students.add(student);
+        }
+        entityManager.flush();
+        for (Student student : students) {
+            eventPublisher.publishEvent(StudentChangedEvent.created(StudentSnapshot.of(student)));
+        }
+        entityManager.clear();
+    }
+
+    private static String field(List<String> fields, Integer index) {
+        if (index == null || index >= fields.size()) {
+            return null;
+        }
+        String value = fields.get(index).trim();
+        return value.isEmpty() ? null : value;
+    }
+
+    private static List<String> parseCsvLine(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    current.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    current.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(current.toString());
+                current.setLength(0);
+            } else {
+                current.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("незакрытая кавычка");
+        }
+        fields.add(current.toString());
+        return fields;
+    }
+
+    private record PendingRow(long row, StudentImportRow data) {
+    }
+
+    private final class Importer {
+
+        private final Set<Long> facultyIds = facultyRepository.findAllIds();
+        private final List<PendingRow> chunk = new ArrayList<>();
+        private final List<RowError> errors = new ArrayList<>();
+        private long imported;
+        private long failed;
+
+        void add(long row, StudentImportRow data) {
+            String error = validate(data);
+            if (error != null) {
+                reject(row, error);
+                return;
+            }
+            chunk.add(new PendingRow(row, data));
+            if (chunk.size() >= chunkSize) {
+                flush();
+            }
+        }
+
+        void reject(long row, String message) {
+            failed++;
+            if (errors.size() < maxErrors) {
+                errors.add(new RowError(row, message));
+            }
+        }
+
+        ImportReport finish() {
+            flush();
+            return new ImportReport(imported, failed, List.copyOf(errors));
+        }
+
+        private String validate(StudentImportRow data) {
+            if (data == null || data.name() == null || data.name().isBlank()) {
+                return "Имя не может быть null или пустой строкой";
+            }
+            if (data.age() == null || data.age() <= 0) {
+                return "Возраст не может быть меньше или равен нулю";
+            }
+            if (data.facultyId() != null && !facultyIds.contains(data.facultyId())) {
+                return "Факультет с ID " + data.facultyId() + " не найден";
+            }
+            return null;
+        }
+
+        private void flush() {
+            if (chunk.isEmpty()) {
+                return;
+            }
+            try {
+                transactionTemplate.executeWithoutResult(status -> insert(chunk));
+                imported += chunk.size();
+            } catch (RuntimeException e) {
+                // Пачка откатилась целиком: повторяем построчно, чтобы найти строки с ошибкой
+                for (PendingRow row : chunk) {
+                    try {
+                        transactionTemplate.executeWithoutResult(status -> insert(List.of(row)));
+                        imported++;
+                    } catch (RuntimeException rowError) {
+                        reject(row.row(), NestedExceptionUtils.getMostSpecificCause(rowError).getMessage());
+                    }
+                }
+            }
+            chunk.clear();
+        }
+    }
+}
@@ -1,33 +1,83 @@
 package ru.hogwarts.school.service;
 
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
-import ru.hogwarts.school.model.Faculty;
+import org.springframework.transaction.annotation.Transactional;
+import ru.hogwarts.school.dto.AgeRangeIds;
+import ru.hogwarts.school.dto.AgeStats;
+import ru.hogwarts.school.dto.CursorPage;
+import ru.hogwarts.school.dto.FacultyDto;
+import ru.hogwarts.school.dto.StudentDetails;
+import ru.hogwarts.school.dto.StudentSearchHit;
+import ru.hogwarts.school.event.StudentChangedEvent;
+import ru.hogwarts.school.event.StudentSnapshot;
 import ru.hogwarts.school.model.Student;
 import ru.hogwarts.school.repository.StudentRepository;
+import ru.hogwarts.school.stats.StudentColumnarIndex;
+import ru.hogwarts.school.stats.StudentStatistics;
 
 import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
 
 @Service
 public class StudentService {
 
+    private static final int MIN_SEARCH_LENGTH = 3;
+
     private final StudentRepository studentRepository;
+    private final StudentGroupCommitter studentGroupCommitter;
+    private final StudentStatistics studentStatistics;
+    private final StudentColumnarIndex studentColumnarIndex;
+    private final ApplicationEventPublisher eventPublisher;
 
-    public StudentService(StudentRepository studentRepository) {
+    public StudentService(StudentRepository studentRepository, StudentGroupCommitter studentGroupCommitter, StudentStatistics studentStatistics,
+                          StudentColumnarIndex studentColumnarIndex, ApplicationEventPublisher eventPublisher) {
         this.studentRepository = studentRepository;
+        this.studentGroupCommitter = studentGroupCommitter;
+        this.studentStatistics = studentStatistics;
+        this.studentColumnarIndex = studentColumnarIndex;
+        this.eventPublisher = eventPublisher;
     }
 
     public Student addStudent(Student student) {
-        return studentRepository.save(student);
+        if (student.getId() != null) {
+            Optional<Student> updated = updateStudent(student);
+            if (updated.isPresent()) {
+                return updated.get();
+            }
+            student.setId(null);
+        }
+        if (studentGroupCommitter.isEnabled()) {
+            try {
+                return studentGroupCommitter.submit(student).join();
+            } catch (RejectedExecutionException e) {
+                return save(null, student);
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof TimeoutException) {
+                    throw new IllegalStateException("Групповая запись студентов не ответила за " + studentGroupCommitter.submitTimeout());
+                }
+                if (e.getCause() instanceof RuntimeException cause) {
+                    throw cause;
+                }
+                throw e;
+            }
+        }
+        return save(null, student);
     }
 
     public Optional<Student> getStudent(Long id) {
         return studentRepository.findById(id);
     }
 
-    public Collection<Student> getAllStudents() {
-        return studentRepository.findAll();
+    public CursorPage<Student> getAllStudents(String cursor, int limit) {
+        CursorPage.checkLimit(limit);
+        List<Student> rows = studentRepository.findByIdGreaterThanOrderByIdAsc(CursorPage.decode(cursor), Limit.of(limit + 1));
+        return CursorPage.of(rows, limit, Student::getId);
     }
 
     public Collection<Student> getStudentByAge(int age) {
@@ -41,38 +91,103 @@ public class StudentService {
         return studentRepository.findByAgeBetween(min, max);
     }
 
-    public Faculty getFacultyByStudentId(Long studentId) {
-        return studentRepository.findById(studentId).map(Student::getFaculty).orElseThrow(() -> new IllegalArgumentException("Студент с ID " + studentId + " не найден"));
+    // Пока колоночный индекс не включён или не загружен, ответы строятся запросом к базе
+    public AgeRangeIds getStudentIdsByAgeBetween(int min, int max, Long facultyId) {
+        if (min > max) {
+            throw new IllegalArgumentException("min не может быть больше max");
+        }
+        long[] ids = studentColumnarIndex.isReady()
+                ? studentColumnarIndex.ids(min, max, facultyId)
+                : studentRepository.findIdsByAgeBetween(min, max, facultyId).stream().mapToLong(Long::longValue).toArray();
+        return new AgeRangeIds(min, max, facultyId, ids.length, ids);
+    }
+
+    public long countStudentsByAgeBetween(int min, int max, Long facultyId) {
+        if (min > max) {
+            throw new IllegalArgumentException("min не может быть больше max");
+        }
+        return studentColumnarIndex.isReady()
+                ? studentColumnarIndex.count(min, max, facultyId)
+                : studentRepository.countByAgeBetween(min, max, facultyId);
+    }
+
+    public List<StudentSearchHit> searchStudents(String query, int page, int limit) {
+        String trimmed = query == null ? "" : query.trim();
+        if (trimmed.length() < MIN_SEARCH_LENGTH) {
+            throw new IllegalArgumentException("Строка поиска должна содержать не меньше " + MIN_SEARCH_LENGTH + " символов");
+        }
+        if (page < 0) {
+            throw new IllegalArgumentException("Номер страницы не может быть отрицательным");
+        }
+        CursorPage.checkLimit(limit);
+        String pattern = "%" + trimmed.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%";
+        return studentRepository.searchByName(trimmed, pattern, limit, (long) page * limit).stream()
+                .map(row -> new StudentSearchHit(
+                        ((Number) row[0]).longValue(),
+                        (String) row[1],
+                        ((Number) row[2]).intValue(),
+                        row[3] == null ? null : ((Number) row[3]).longValue(),
+                        ((Number) row[4]).doubleValue()))
+                .toList();
+    }
+
+    public Optional<StudentDetails> getStudentDetails(Long id) {
+        return studentRepository.findDetailsById(id);
+    }
+
+    public FacultyDto getFacultyByStudentId(Long studentId) {
+        return studentRepository.findDetailsById(studentId).map(StudentDetails::faculty).orElseThrow(() -> new IllegalArgumentException("Студент с ID " + studentId + " не найден"));
     }
 
     public Optional<Student> updateStudent(Student student) {
         if (student.getId() == null) {
             return Optional.empty();
         }
-        if (!studentRepository.existsById(student.getId())) {
-            return Optional.empty();
-        }
-        Student updated = studentRepository.save(student);
-        return Optional.of(updated);
+        // Поля переносятся на загруженную запись: у пришедшего объекта нет актуальной версии,
+        // а факультет в теле запроса не передаётся и не должен сбрасываться
+        return studentRepository.findById(student.getId()).map(existing -> {
+            StudentSnapshot before = StudentSnapshot.of(existing);
+            existing.setName(student.getName());
+            existing.setAge(student.getAge());
+            return save(before, existing);
+        });
     }
 
+    // Строка блокируется до удаления: снимок совпадает с удалённой версией, а параллельное удаление того же
+    // студента ждёт фиксации и получает пустой результат, поэтому событие об удалении публикуется один раз
+    @Transactional
     public Optional<Student> deleteStudent(Long id) {
-        Optional<Student> student = studentRepository.findById(id);
-        if (student.isPresent()) {
-            studentRepository.deleteById(id);
+        Optional<Student> student = studentRepository.findByIdForUpdate(id);
+        if (student.isEmpty()) {
+            return student;
         }
+        StudentSnapshot before = StudentSnapshot.of(student.get());
+        if (studentRepository.deleteStudentById(id) == 0) {
+            return Optional.empty();
+        }
+        eventPublisher.publishEvent(StudentChangedEvent.deleted(before));
         return student;
     }
 
     public Long getTotalStudentsCount() {
-        return studentRepository.countAllStudents();
+        return studentStatistics.count();
     }
 
     public double getAverageAge() {
-        return Optional.ofNullable(studentRepository.getAverageAge()).orElse(0.0);
+        return studentStatistics.averageAge();
+    }
+
+    public AgeStats getStudentStats() {
+        return studentStatistics.snapshot();
     }
 
     public List<Student> getTop5Students() {
         return studentRepository.findTop5ByOrderByIdDesc();
     }
+
+    private Student save(StudentSnapshot before, Student student) {
+        Student saved = studentRepository.save(student);
+        eventPublisher.publishEvent(new StudentChangedEvent(before, StudentSnapshot.of(saved)));
+        return saved;
+    }
 }
@@ -0,0 +1,381 @@
+package ru.hogwarts.school.stats;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.hogwarts.school.dto.StudentAgeRow;
+import ru.hogwarts.school.event.StudentChangedEvent;
+import ru.hogwarts.school.event.StudentSnapshot;
+import ru.hogwarts.school.repository.StudentRepository;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Колоночная копия таблицы студентов в примитивных массивах, упорядоченных по (age, id):
+ * диапазон возрастов — это непрерывный отрезок строк, который находится двоичным поиском.
+ * <p>
+ * Изменения не перестраивают массивы сразу: старая строка помечается удалённой, новая версия
+ * попадает в небольшую дельту. Когда дельта вырастает до {@code delta-limit}, массивы
+ * пересобираются слиянием без обращения к базе.
+ */
+@Component
+public class StudentColumnarIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(StudentColumnarIndex.class);
+    private static final int PARALLEL_THRESHOLD = 1 << 16;
+    private static final long NO_FACULTY = 0L;
+    private static final Comparator<StudentSnapshot> AGE_THEN_ID = Comparator.comparingInt(StudentSnapshot::age).thenComparing(StudentSnapshot::id);
+
+    private final StudentRepository studentRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final int deltaLimit;
+    private final Object writeLock = new Object();
+    private volatile State state;
+    // События, пришедшие пока refresh читает таблицу; доступ под writeLock
+    private List<StudentChangedEvent> recorded;
+
+    public StudentColumnarIndex(StudentRepository studentRepository,
+                                PlatformTransactionManager transactionManager,
+                                @Value("${app.students.columnar-index.enabled:false}") boolean enabled,
+                                @Value("${app.students.columnar-index.delta-limit:4096}") int deltaLimit) {
+        this.studentRepository = studentRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.enabled = enabled;
+        this.deltaLimit = deltaLimit;
+    }
+
+    public boolean isReady() {
+        return state != null;
+    }
+
+    public long count(int minAge, int maxAge, Long facultyId) {
+        State current = requireState();
+        long target = facultyId == null ? NO_FACULTY : facultyId;
+        Columns columns = current.columns;
+        int from = columns.lowerBound(minAge);
+        int to = columns.upperBound(maxAge);
+
+        long count;
+        if (facultyId == null && current.dead.isEmpty()) {
+            count = to - from;
+        } else {
+            count = rows(from, to).filter(row -> columns.matches(row, facultyId != null, target) && !current.dead.isSet(row)).count();
+        }
+        for (StudentSnapshot student : current.delta.values()) {
+            if (matches(student, minAge, maxAge, facultyId)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    // Результат упорядочен по (age, id), как и запрос к базе: строки дельты вливаются в отрезок массивов
+    public long[] ids(int minAge, int maxAge, Long facultyId) {
+        State current = requireState();
+        long target = facultyId == null ? NO_FACULTY : facultyId;
+        Columns columns = current.columns;
+        int from = columns.lowerBound(minAge);
+        int to = columns.upperBound(maxAge);
+
+        StudentSnapshot[] extra = current.delta.values().stream()
+                .filter(student -> matches(student, minAge, maxAge, facultyId))
+                .sorted(AGE_THEN_ID)
+                .toArray(StudentSnapshot[]::new);
+        IntStream live = rows(from, to).filter(row -> columns.matches(row, facultyId != null, target) && !current.dead.isSet(row));
+        if (extra.length == 0) {
+            return live.mapToLong(row -> columns.ids[row]).toArray();
+        }
+
+        int[] base = live.toArray();
+        long[] ids = new long[base.length + extra.length];
+        int i = 0;
+        int j = 0;
+        for (int k = 0; k < ids.length; k++) {
+            boolean takeBase = j == extra.length || i < base.length && compare(columns.ages[base[i]], columns.ids[base[i]], extra[j]) < 0;
+            ids[k] = takeBase ? columns.ids[base[i++]] : extra[j++].id();
+        }
+        return ids;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void seed() {
+        if (enabled) {
+            refresh();
+        }
+    }
+
+    /**
+     * Перечитывает таблицу и подменяет массивы. События, пришедшие пока шло чтение, повторяются
+     * на новом состоянии до публикации: применение события идемпотентно, поэтому изменение,
+     * которое уже попало в выборку, повторно ничего не портит.
+     */
+    @Scheduled(initialDelayString = "${app.students.columnar-index.refresh-interval:15m}", fixedDelayString = "${app.students.columnar-index.refresh-interval:15m}")
+    public synchronized void refresh() {
+        if (!enabled) {
+            return;
+        }
+        synchronized (writeLock) {
+            recorded = new ArrayList<>();
+        }
+        Columns columns;
+        try {
+            columns = transactionTemplate.execute(status -> {
+                try (Stream<StudentAgeRow> rows = studentRepository.streamAgeRows()) {
+                    ColumnsBuilder builder = new ColumnsBuilder();
+                    rows.forEach(row -> builder.add(row.id(), row.age(), row.facultyId() == null ? NO_FACULTY : row.facultyId()));
+                    return builder.build();
+                }
+            });
+        } catch (RuntimeException e) {
+            synchronized (writeLock) {
+                recorded = null;
+            }
+            throw e;
+        }
+        int replayed;
+        synchronized (writeLock) {
+            State fresh = new State(columns);
+            for (StudentChangedEvent event : recorded) {
+                fresh = apply(fresh, event);
+            }
+            replayed = recorded.size();
+            recorded = null;
+            state = fresh;
+        }
+        log.info("Колоночный индекс студентов загружен, строк: {}, повторено событий: {}", columns.ids.length, replayed);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onStudentChanged(StudentChangedEvent event) {
+        synchronized (writeLock) {
+            if (recorded != null) {
+                recorded.add(event);
+            }
+            State current = state;
+            if (current != null) {
+                state = apply(current, event);
+            }
+        }
+    }
+
+    // Вызывается только под writeLock; при переполнении дельты возвращает пересобранное состояние
+    private State apply(State current, StudentChangedEvent event) {
+        Long id = event.after() != null ? event.after().id() : event.before().id();
+        int row = current.columns.rowOf(id);
+        if (row >= 0) {
+            current.dead.set(row);
+        }
+        if (event.after() != null) {
+            current.delta.put(id, event.after());
+        } else {
+            current.delta.remove(id);
+        }
+        if (current.delta.size() + current.dead.count() > deltaLimit) {
+            return new State(current.merge());
+        }
+        return current;
+    }
+
+    private State requireState() {
+        State current = state;
+        if (current == null) {
+            throw new IllegalStateException("Колоночный индекс студентов не загружен");
+        }
+        return current;
+    }
+
+    private static IntStream rows(int from, int to) {
+        IntStream rows = IntStream.range(from, to);
+        return to - from >= PARALLEL_THRESHOLD ? rows.parallel() : rows;
+    }
+
+    private static int compare(int age, long id, StudentSnapshot student) {
+        int byAge = Integer.compare(age, student.age());
+        return byAge != 0 ? byAge : Long.compare(id, student.id());
+    }
+
+    private static boolean matches(StudentSnapshot student, int minAge, int maxAge, Long facultyId) {
+        return student.age() >= minAge && student.age() <= maxAge && (facultyId == null || facultyId.equals(student.facultyId()));
+    }
+
+    private static final class State {
+
+        private final Columns columns;
+        private final Tombstones dead;
+        private final Map<Long, StudentSnapshot> delta = new ConcurrentHashMap<>();
+
+        private State(Columns columns) {
+            this.columns = columns;
+            this.dead = new Tombstones(columns.ids.length);
+        }
+
+        // Живые строки в порядке id сливаются с дельтой, затем снова раскладываются по возрасту
+        private Columns merge() {
+            TreeMap<Long, StudentSnapshot> changes = new TreeMap<>(delta);
+            ColumnsBuilder builder = new ColumnsBuilder();
+            for (int k = 0; k < columns.idOrder.length; k++) {
+                int row = columns.idOrder[k];
+                long id = columns.ids[row];
+                Map.Entry<Long, StudentSnapshot> next;
+                while ((next = changes.firstEntry()) != null && next.getKey() < id) {
+                    add(builder, changes.pollFirstEntry().getValue());
+                }
+                if (!dead.isSet(row)) {
+                    builder.add(id, columns.ages[row], columns.facultyIds[row]);
+                }
+            }
+            changes.values().forEach(student -> add(builder, student));
+            return builder.build();
+        }
+
+        private static void add(ColumnsBuilder builder, StudentSnapshot student) {
+            builder.add(student.id(), student.age(), student.facultyId() == null ? NO_FACULTY : student.facultyId());
+        }
+    }
+
+    private static final class Columns {
+
+        private final int[] ages;
+        private final long[] ids;
+        private final long[] facultyIds;
+        // Строки в порядке возрастания id: для поиска строки по id двоичным поиском
+        private final long[] sortedIds;
+        private final int[] idOrder;
+
+        private Columns(int[] ages, long[] ids, long[] facultyIds, long[] sortedIds, int[] idOrder) {
+            this.ages = ages;
+            this.ids = ids;
+            this.facultyIds = facultyIds;
+            this.sortedIds = sortedIds;
+            this.idOrder = idOrder;
+        }
+
+        // Первая строка с возрастом не меньше age
+        private int lowerBound(int age) {
+            return search(age, false);
+        }
+
+        // Первая строка с возрастом больше age; без age + 1, которое переполняется на Integer.MAX_VALUE
+        private int upperBound(int age) {
+            return search(age, true);
+        }
+
+        private int search(int age, boolean inclusive) {
+            int low = 0;
+            int high = ages.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (ages[mid] < age || inclusive && ages[mid] == age) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        private int rowOf(long id) {
+            int k = Arrays.binarySearch(sortedIds, id);
+            return k >= 0 ? idOrder[k] : -1;
+        }
+
+        private boolean matches(int row, boolean filterFaculty, long facultyId) {
+            return !filterFaculty || facultyIds[row] == facultyId;
+        }
+    }
+
+    /**
+     * Принимает строки в порядке возрастания id и упорядочивает их по возрасту сортировкой ключей
+     * (возраст, номер строки): внутри одного возраста строки остаются упорядочены по id.
+     * Память зависит только от числа строк, а не от разброса возрастов.
+     */
+    private static final class ColumnsBuilder {
+
+        private int[] ages = new int[1024];
+        private long[] ids = new long[1024];
+        private long[] facultyIds = new long[1024];
+        private int size;
+
+        private void add(long id, int age, long facultyId) {
+            if (size == ids.length) {
+                ages = Arrays.copyOf(ages, size * 2);
+                ids = Arrays.copyOf(ids, size * 2);
+                facultyIds = Arrays.copyOf(facultyIds, size * 2);
+            }
+            ages[size] = age;
+            ids[size] = id;
+            facultyIds[size] = facultyId;
+            size++;
+        }
+
+        private Columns build() {
+            long[] keys = new long[size];
+            for (int i = 0; i < size; i++) {
+                keys[i] = (long) ages[i] << 32 | i;
+            }
+            Arrays.parallelSort(keys);
+
+            int[] sortedAges = new int[size];
+            long[] sortedRowIds = new long[size];
+            long[] sortedFacultyIds = new long[size];
+            int[] idOrder = new int[size];
+            for (int row = 0; row < size; row++) {
+                int i = (int) keys[row];
+                sortedAges[row] = ages[i];
+                sortedRowIds[row] = ids[i];
+                sortedFacultyIds[row] = facultyIds[i];
+                idOrder[i] = row;
+            }
+            return new Columns(sortedAges, sortedRowIds, sortedFacultyIds, Arrays.copyOf(ids, size), idOrder);
+        }
+    }
+
+    private static final class Tombstones {
+
+        private final AtomicLongArray bits;
+        private volatile int count;
+
+        private Tombstones(int size) {
+            this.bits = new AtomicLongArray((size + 63) / 64);
+        }
+
+        private boolean isSet(int row) {
+            return (bits.get(row >>> 6) & (1L << row)) != 0;
+        }
+
+        private boolean isEmpty() {
+            return count == 0;
+        }
+
+        private int count() {
+            return count;
+        }
+
+        // Вызывается только под writeLock
+        private void set(int row) {
+            long mask = 1L << row;
+            long previous = bits.getAndAccumulate(row >>> 6, mask, (current, bit) -> current | bit);
+            if ((previous & mask) == 0) {
+                count++;
+            }
+        }
+    }
+}
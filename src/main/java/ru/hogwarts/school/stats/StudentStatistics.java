@@ -0,0 +1,163 @@
+package ru.hogwarts.school.stats;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.hogwarts.school.dto.AgeCount;
+import ru.hogwarts.school.dto.AgeStats;
+import ru.hogwarts.school.event.StudentChangedEvent;
+import ru.hogwarts.school.repository.StudentRepository;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Счётчики по студентам в памяти: количество, сумма возрастов и гистограмма по возрасту.
+ * Заполняются из базы при старте, дальше обновляются по {@link StudentChangedEvent}
+ * и периодически сверяются с базой.
+ */
+@Component
+public class StudentStatistics {
+
+    private static final Logger log = LoggerFactory.getLogger(StudentStatistics.class);
+
+    private final StudentRepository studentRepository;
+    // События применяются под read-lock, замена счётчиков и начало записи событий идут под write-lock
+    private final ReadWriteLock swapLock = new ReentrantReadWriteLock();
+    private volatile Counters counters = new Counters();
+    private Queue<StudentChangedEvent> recorded;
+
+    public StudentStatistics(StudentRepository studentRepository) {
+        this.studentRepository = studentRepository;
+    }
+
+    public long count() {
+        return counters.count.sum();
+    }
+
+    public double averageAge() {
+        Counters current = counters;
+        long count = current.count.sum();
+        return count == 0 ? 0.0 : (double) current.ageSum.sum() / count;
+    }
+
+    public AgeStats snapshot() {
+        Counters current = counters;
+        SortedMap<Integer, Long> histogram = new TreeMap<>();
+        current.histogram.forEach((age, counter) -> {
+            long value = counter.sum();
+            if (value > 0) {
+                histogram.put(age, value);
+            }
+        });
+        return AgeStats.of(histogram);
+    }
+
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onStudentChanged(StudentChangedEvent event) {
+        swapLock.readLock().lock();
+        try {
+            counters.apply(event);
+            if (recorded != null) {
+                recorded.add(event);
+            }
+        } finally {
+            swapLock.readLock().unlock();
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void seed() {
+        reload();
+        log.info("Статистика студентов загружена, студентов: {}", count());
+    }
+
+    @Scheduled(initialDelayString = "${app.students.stats.reconcile-interval:5m}", fixedDelayString = "${app.students.stats.reconcile-interval:5m}")
+    public void reconcile() {
+        long drift = reload();
+        if (drift != 0) {
+            log.warn("Статистика студентов сверена с базой, расхождение в количестве: {}", drift);
+        }
+    }
+
+    /**
+     * Загружает счётчики из базы и подменяет ими текущие. События, пришедшие пока шёл запрос,
+     * записываются и повторяются на новых счётчиках перед заменой. Событие, зафиксированное
+     * перед самым запросом, может учесться дважды — это исправит следующая сверка.
+     *
+     * @return разница в количестве между новыми и прежними счётчиками
+     */
+    private synchronized long reload() {
+        record(new ConcurrentLinkedQueue<>());
+        Counters fresh;
+        try {
+            fresh = load();
+        } catch (RuntimeException e) {
+            record(null);
+            throw e;
+        }
+        swapLock.writeLock().lock();
+        try {
+            recorded.forEach(fresh::apply);
+            recorded = null;
+            long drift = fresh.count.sum() - counters.count.sum();
+            counters = fresh;
+            return drift;
+        } finally {
+            swapLock.writeLock().unlock();
+        }
+    }
+
+    private void record(Queue<StudentChangedEvent> queue) {
+        swapLock.writeLock().lock();
+        try {
+            recorded = queue;
+        } finally {
+            swapLock.writeLock().unlock();
+        }
+    }
+
+    private Counters load() {
+        Counters fresh = new Counters();
+        for (AgeCount row : studentRepository.countByAge()) {
+            fresh.add(row.age(), row.count());
+        }
+        return fresh;
+    }
+
+    private static final class Counters {
+
+        private final LongAdder count = new LongAdder();
+        private final LongAdder ageSum = new LongAdder();
+        private final Map<Integer, LongAdder> histogram = new ConcurrentHashMap<>();
+
+        private void apply(StudentChangedEvent event) {
+            if (event.before() != null) {
+                add(event.before().age(), -1);
+            }
+            if (event.after() != null) {
+                add(event.after().age(), 1);
+            }
+        }
+
+        private void add(int age, long delta) {
+            count.add(delta);
+            ageSum.add(age * delta);
+            histogram.computeIfAbsent(age, key -> new LongAdder()).add(delta);
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package ru.hogwarts.school.store;
+
+import org.springframework.core.io.Resource;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Optional;
+
+public interface AvatarStore {
+
+    boolean contains(String key);
+
+    /**
+     * Сохраняет содержимое файла {@code source} под ключом {@code key}, если его ещё нет.
+     * Хранилище может переместить {@code source}, поэтому после вызова файл может отсутствовать.
+     */
+    void save(String key, Path source) throws IOException;
+
+    Optional<Resource> load(String key) throws IOException;
+
+    void delete(String key) throws IOException;
+
+    String location(String key);
+}
@@ -0,0 +1,7 @@
+package ru.hogwarts.school.store;
+
+public enum AvatarStoreMode {
+    DB,
+    FILE,
+    DUAL
+}
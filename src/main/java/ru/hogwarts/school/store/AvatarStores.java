@@ -0,0 +1,29 @@
+package ru.hogwarts.school.store;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+public class AvatarStores {
+
+    private final Map<AvatarStoreMode, AvatarStore> stores = new EnumMap<>(AvatarStoreMode.class);
+    private final AvatarStoreMode activeMode;
+
+    public AvatarStores(AvatarStoreMode activeMode, FileAvatarStore fileStore, DbAvatarStore dbStore, DualAvatarStore dualStore) {
+        this.activeMode = activeMode;
+        stores.put(AvatarStoreMode.FILE, fileStore);
+        stores.put(AvatarStoreMode.DB, dbStore);
+        stores.put(AvatarStoreMode.DUAL, dualStore);
+    }
+
+    public AvatarStore active() {
+        return stores.get(activeMode);
+    }
+
+    public AvatarStoreMode activeMode() {
+        return activeMode;
+    }
+
+    public AvatarStore get(AvatarStoreMode mode) {
+        return stores.get(mode);
+    }
+}
@@ -0,0 +1,121 @@
+package ru.hogwarts.school.store;
+
+import org.springframework.core.io.AbstractResource;
+
+import javax.sql.DataSource;
+import java.io.FileNotFoundException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.Blob;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Содержимое large object, которое читается по мере чтения потока: по умолчанию из avatar_content,
+ * либо из любой колонки, которую выбирает запрос с одним параметром.
+ * Large object доступен только внутри транзакции, поэтому каждый поток держит своё соединение
+ * с read-only транзакцией и отдаёт его в пул при закрытии.
+ */
+public class BlobResource extends AbstractResource {
+
+    private static final String CONTENT_QUERY = "SELECT data FROM avatar_content WHERE hash = ?";
+
+    private final DataSource dataSource;
+    private final String query;
+    private final Object key;
+    private final long size;
+
+    public BlobResource(DataSource dataSource, String key, long size) {
+        this(dataSource, CONTENT_QUERY, key, size);
+    }
+
+    public BlobResource(DataSource dataSource, String query, Object key, long size) {
+        this.dataSource = dataSource;
+        this.query = query;
+        this.key = key;
+        this.size = size;
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        Connection connection = null;
+        try {
+            connection = dataSource.getConnection();
+            connection.setAutoCommit(false);
+            connection.setReadOnly(true);
+            try (PreparedStatement statement = connection.prepareStatement(query)) {
+                statement.setObject(1, key);
+                try (ResultSet rows = statement.executeQuery()) {
+                    if (!rows.next()) {
+                        throw new FileNotFoundException("Аватар не найден в базе данных: " + key);
+                    }
+                    return new BlobInputStream(rows.getBlob(1), connection);
+                }
+            }
+        } catch (SQLException | IOException e) {
+            close(connection);
+            if (e instanceof IOException io) {
+                throw io;
+            }
+            throw new IOException("Не удалось прочитать аватар из базы данных: " + key, e);
+        }
+    }
+
+    @Override
+    public long contentLength() {
+        return size;
+    }
+
+    @Override
+    public boolean exists() {
+        return true;
+    }
+
+    @Override
+    public String getDescription() {
+        return query.equals(CONTENT_QUERY) ? "avatar_content " + key : "large object " + key;
+    }
+
+    private static void close(Connection connection) {
+        if (connection == null) {
+            return;
+        }
+        try (connection) {
+            connection.rollback();
+        } catch (SQLException ignored) {
+            // Соединение всё равно закрывается и возвращается в пул
+        }
+    }
+
+    private static final class BlobInputStream extends FilterInputStream {
+
+        private final Blob blob;
+        private final Connection connection;
+        private boolean closed;
+
+        private BlobInputStream(Blob blob, Connection connection) throws SQLException {
+            super(blob.getBinaryStream());
+            this.blob = blob;
+            this.connection = connection;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                super.close();
+                blob.free();
+            } catch (SQLException e) {
+                throw new IOException("Не удалось освободить large object", e);
+            } finally {
+                BlobResource.close(connection);
+            }
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package ru.hogwarts.school.store;
+
+import org.hibernate.engine.jdbc.proxy.BlobProxy;
+import org.springframework.core.io.Resource;
+import org.springframework.transaction.annotation.Transactional;
+import ru.hogwarts.school.model.AvatarContent;
+import ru.hogwarts.school.repository.AvatarContentRepository;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+
+public class DbAvatarStore implements AvatarStore {
+
+    private final AvatarContentRepository avatarContentRepository;
+    private final DataSource dataSource;
+
+    public DbAvatarStore(AvatarContentRepository avatarContentRepository, DataSource dataSource) {
+        this.avatarContentRepository = avatarContentRepository;
+        this.dataSource = dataSource;
+    }
+
+    @Override
+    public boolean contains(String key) {
+        return avatarContentRepository.existsById(key);
+    }
+
+    @Override
+    @Transactional
+    public void save(String key, Path source) throws IOException {
+        if (avatarContentRepository.existsById(key)) {
+            return;
+        }
+        long size = Files.size(source);
+        try (InputStream in = Files.newInputStream(source)) {
+            avatarContentRepository.saveAndFlush(new AvatarContent(key, size, BlobProxy.generateProxy(in, size)));
+        }
+    }
+
+    @Override
+    public Optional<Resource> load(String key) {
+        return avatarContentRepository.findSizeByHash(key).map(size -> new BlobResource(dataSource, key, size));
+    }
+
+    @Override
+    @Transactional
+    public void delete(String key) {
+        avatarContentRepository.deleteWithData(key);
+    }
+
+    @Override
+    public String location(String key) {
+        return "db:" + key;
+    }
+}
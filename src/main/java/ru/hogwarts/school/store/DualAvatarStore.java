@@ -0,0 +1,46 @@
+package ru.hogwarts.school.store;
+
+import org.springframework.core.io.Resource;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Optional;
+
+public class DualAvatarStore implements AvatarStore {
+
+    private final FileAvatarStore fileStore;
+    private final DbAvatarStore dbStore;
+
+    public DualAvatarStore(FileAvatarStore fileStore, DbAvatarStore dbStore) {
+        this.fileStore = fileStore;
+        this.dbStore = dbStore;
+    }
+
+    @Override
+    public boolean contains(String key) {
+        return fileStore.contains(key) && dbStore.contains(key);
+    }
+
+    @Override
+    public void save(String key, Path source) throws IOException {
+        dbStore.save(key, source);
+        fileStore.save(key, source);
+    }
+
+    @Override
+    public Optional<Resource> load(String key) throws IOException {
+        Optional<Resource> resource = fileStore.load(key);
+        return resource.isPresent() ? resource : dbStore.load(key);
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        fileStore.delete(key);
+        dbStore.delete(key);
+    }
+
+    @Override
+    public String location(String key) {
+        return fileStore.location(key);
+    }
+}
@@ -0,0 +1,206 @@
+package ru.hogwarts.school.store;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.Resource;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Файловое хранилище с раскладкой по подкаталогам из префикса ключа:
+ * при глубине 2 ключ {@code abcdef...} лежит в {@code ab/cd/abcdef...}.
+ * Чтение находит файл и в старой раскладке, пока идёт {@link #reshard(int)}.
+ */
+public class FileAvatarStore implements AvatarStore {
+
+    public static final int MAX_SHARD_DEPTH = 4;
+
+    private static final Logger log = LoggerFactory.getLogger(FileAvatarStore.class);
+    private static final Pattern KEY = Pattern.compile("[0-9a-f]{64}(-\\d+)?");
+
+    private final Path avatarDir;
+    private final int shardDepth;
+    private final AtomicBoolean resharding = new AtomicBoolean();
+
+    public FileAvatarStore(Path avatarDir, int shardDepth) {
+        if (shardDepth < 0 || shardDepth > MAX_SHARD_DEPTH) {
+            throw new IllegalArgumentException("Глубина раскладки должна быть от 0 до " + MAX_SHARD_DEPTH);
+        }
+        this.avatarDir = avatarDir;
+        this.shardDepth = shardDepth;
+        try {
+            Files.createDirectories(avatarDir);
+        } catch (IOException e) {
+            throw new RuntimeException("Не удалось создать директорию для аватаров: " + avatarDir, e);
+        }
+    }
+
+    @Override
+    public boolean contains(String key) {
+        return locate(key).isPresent();
+    }
+
+    @Override
+    public void save(String key, Path source) throws IOException {
+        if (contains(key)) {
+            return;
+        }
+        Path target = resolve(key, shardDepth);
+        Files.createDirectories(target.getParent());
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Path tempFile = Files.createTempFile(target.getParent(), "save-", ".tmp");
+            try {
+                Files.copy(source, tempFile, StandardCopyOption.REPLACE_EXISTING);
+                Files.move(tempFile, target, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(tempFile);
+            }
+        }
+    }
+
+    @Override
+    public Optional<Resource> load(String key) throws IOException {
+        Optional<Path> path = locate(key);
+        if (path.isEmpty()) {
+            return Optional.empty();
+        }
+        try (FileChannel channel = FileChannel.open(path.get(), StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return Optional.of(new ByteBufferResource(buffer, path.get().toString()));
+        } catch (NoSuchFileException e) {
+            // Файл могли перенести в другой подкаталог между поиском и открытием
+            return path.get().equals(resolve(key, shardDepth)) ? Optional.empty() : load(key);
+        }
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        for (int depth = 0; depth <= MAX_SHARD_DEPTH; depth++) {
+            Files.deleteIfExists(resolve(key, depth));
+        }
+    }
+
+    @Override
+    public String location(String key) {
+        return resolve(key, shardDepth).toString();
+    }
+
+    public int shardDepth() {
+        return shardDepth;
+    }
+
+    /**
+     * Переносит файлы, лежащие не в текущей раскладке, в нужные подкаталоги.
+     * Работает на живом хранилище: перенос атомарный, а чтение ищет файл во всех раскладках.
+     * Если перенос не уложился в {@code timeout}, оставшиеся задачи отменяются: прерванная перераскладка
+     * безопасна, её можно запустить заново.
+     */
+    public ReshardReport reshard(int threads, Duration timeout) throws IOException {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("Количество потоков должно быть больше нуля");
+        }
+        if (!resharding.compareAndSet(false, true)) {
+            throw new IllegalStateException("Перераскладка хранилища уже выполняется");
+        }
+        LongAdder moved = new LongAdder();
+        LongAdder skipped = new LongAdder();
+        LongAdder failed = new LongAdder();
+        AtomicInteger counter = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(threads * 64), runnable -> {
+            Thread thread = new Thread(runnable, "avatar-reshard-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }, new ThreadPoolExecutor.CallerRunsPolicy());
+        try (Stream<Path> files = Files.walk(avatarDir, MAX_SHARD_DEPTH + 1)) {
+            files.filter(Files::isRegularFile)
+                    .filter(path -> KEY.matcher(path.getFileName().toString()).matches())
+                    .forEach(path -> executor.execute(() -> {
+                        try {
+                            if (moveToShard(path)) {
+                                moved.increment();
+                            } else {
+                                skipped.increment();
+                            }
+                        } catch (IOException | RuntimeException e) {
+                            failed.increment();
+                            log.warn("Не удалось перенести файл аватара {}", path, e);
+                        }
+                    }));
+        } finally {
+            executor.shutdown();
+            boolean finished = false;
+            try {
+                finished = executor.awaitTermination(timeout.toMillis(), TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (!finished) {
+                executor.shutdownNow();
+            }
+            resharding.set(false);
+        }
+        if (!executor.isTerminated()) {
+            throw new IOException("Перераскладка не завершилась за " + timeout + ", перенесено " + moved.sum() + " файлов");
+        }
+        return new ReshardReport(shardDepth, moved.sum(), skipped.sum(), failed.sum());
+    }
+
+    private boolean moveToShard(Path path) throws IOException {
+        Path target = resolve(path.getFileName().toString(), shardDepth);
+        if (target.equals(path)) {
+            return false;
+        }
+        Files.createDirectories(target.getParent());
+        try {
+            Files.move(path, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+        return true;
+    }
+
+    private Optional<Path> locate(String key) {
+        Path current = resolve(key, shardDepth);
+        if (Files.exists(current)) {
+            return Optional.of(current);
+        }
+        for (int depth = 0; depth <= MAX_SHARD_DEPTH; depth++) {
+            Path path = resolve(key, depth);
+            if (depth != shardDepth && Files.exists(path)) {
+                return Optional.of(path);
+            }
+        }
+        return Optional.empty();
+    }
+
+    private Path resolve(String key, int depth) {
+        Path dir = avatarDir;
+        for (int level = 0; level < depth && level * 2 + 2 <= key.length(); level++) {
+            dir = dir.resolve(key.substring(level * 2, level * 2 + 2));
+        }
+        return dir.resolve(key);
+    }
+
+    public record ReshardReport(int shardDepth, long moved, long skipped, long failed) {
+    }
+}
@@ -0,0 +1,34 @@
+-- Схема в том виде, в каком её создавал ddl-auto=update; на существующей базе ничего не меняет
+CREATE TABLE IF NOT EXISTS faculty
+(
+    id    BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    name  VARCHAR(255) NOT NULL,
+    color VARCHAR(255) NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS student
+(
+    id         BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    name       VARCHAR(255) NOT NULL,
+    age        INTEGER      NOT NULL,
+    faculty_id BIGINT REFERENCES faculty (id)
+);
+
+CREATE TABLE IF NOT EXISTS avatar_content
+(
+    hash VARCHAR(64) PRIMARY KEY,
+    size BIGINT NOT NULL,
+    data OID    NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS avatar
+(
+    id           BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    file_path    VARCHAR(255) NOT NULL,
+    file_size    BIGINT       NOT NULL,
+    media_type   VARCHAR(255) NOT NULL,
+    content_hash VARCHAR(64),
+    student_id   BIGINT       NOT NULL UNIQUE REFERENCES student (id)
+);
+
+ALTER TABLE avatar ADD COLUMN IF NOT EXISTS content_hash VARCHAR(64);
@@ -0,0 +1,7 @@
+-- Идентификаторы студентов выдаются последовательностью пачками по 50 (pooled optimizer),
+-- иначе Hibernate не может группировать вставки в batch
+ALTER TABLE student ALTER COLUMN id DROP IDENTITY IF EXISTS;
+ALTER TABLE student ALTER COLUMN id DROP DEFAULT;
+
+CREATE SEQUENCE IF NOT EXISTS student_seq INCREMENT BY 50;
+SELECT setval('student_seq', COALESCE((SELECT MAX(id) FROM student), 0) + 50, false);
@@ -0,0 +1,4 @@
+-- Поиск по подстроке имени (ILIKE '%...%') через триграммный GIN-индекс
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+CREATE INDEX IF NOT EXISTS idx_student_name_trgm ON student USING gin (name gin_trgm_ops);
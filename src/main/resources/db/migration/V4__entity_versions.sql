@@ -0,0 +1,12 @@
+-- Версия для оптимистической блокировки и время последнего изменения для условных GET-запросов
+ALTER TABLE faculty
+    ADD COLUMN IF NOT EXISTS version    BIGINT                   NOT NULL DEFAULT 0,
+    ADD COLUMN IF NOT EXISTS updated_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT now();
+
+ALTER TABLE student
+    ADD COLUMN IF NOT EXISTS version    BIGINT                   NOT NULL DEFAULT 0,
+    ADD COLUMN IF NOT EXISTS updated_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT now();
+
+ALTER TABLE avatar
+    ADD COLUMN IF NOT EXISTS version    BIGINT                   NOT NULL DEFAULT 0,
+    ADD COLUMN IF NOT EXISTS updated_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT now();
@@ -0,0 +1,21 @@
+-- Удаление строки avatar_content раньше не вызывало lo_unlink, и байты оставались в pg_largeobject.
+-- Large objects держит не только avatar_content: на обновлённой базе осталась колонка avatar.data
+-- со старыми аватарами. Поэтому удаляется только то, на что не ссылается ни одна колонка типа oid.
+DO
+$$
+    DECLARE
+        col        RECORD;
+        referenced TEXT := '';
+    BEGIN
+        FOR col IN
+            SELECT table_schema, table_name, column_name
+            FROM information_schema.columns
+            WHERE data_type = 'oid'
+              AND table_schema NOT IN ('pg_catalog', 'information_schema')
+            LOOP
+                referenced := referenced || format(' AND NOT EXISTS (SELECT 1 FROM %I.%I t WHERE t.%I = m.oid)',
+                                                   col.table_schema, col.table_name, col.column_name);
+            END LOOP;
+        EXECUTE 'SELECT count(lo_unlink(m.oid)) FROM pg_largeobject_metadata m WHERE true' || referenced;
+    END
+$$;
@@ -0,0 +1,86 @@
+package ru.hogwarts.school.cache;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AvatarCacheTest {
+
+    private static AvatarKey key(int id) {
+        return AvatarKey.original("%064x".formatted(id));
+    }
+
+    private static byte[] bytes(int length, int seed) {
+        byte[] data = new byte[length];
+        Arrays.fill(data, (byte) seed);
+        return data;
+    }
+
+    private static AvatarCache cache(long offHeapBytes) {
+        return new AvatarCache(DataSize.ofKilobytes(10), DataSize.ofKilobytes(4), DataSize.ofBytes(offHeapBytes),
+                DataSize.ofKilobytes(1));
+    }
+
+    @Test
+    public void testEvictsByWeight() {
+        AvatarCache cache = cache(0);
+
+        for (int i = 0; i < 5; i++) {
+            cache.put(key(i), "image/png", bytes(4096, i));
+        }
+        cache.cleanUp();
+
+        assertTrue(cache.residentBytes() <= DataSize.ofKilobytes(10).toBytes());
+        long present = IntStream.range(0, 5).filter(i -> cache.get(key(i)).isPresent()).count();
+        assertEquals(2, present);
+    }
+
+    @Test
+    public void testRejectsEntriesAboveMaxEntrySize() {
+        AvatarCache cache = cache(0);
+
+        cache.put(key(1), "image/png", bytes(4097, 1));
+
+        assertFalse(cache.accepts(4097));
+        assertTrue(cache.get(key(1)).isEmpty());
+        assertEquals(0, cache.residentBytes());
+    }
+
+    @Test
+    public void testEvictedEntriesAreDemotedOffHeap() throws Exception {
+        AvatarCache cache = cache(DataSize.ofKilobytes(64).toBytes());
+
+        for (int i = 0; i < 5; i++) {
+            cache.put(key(i), "image/png", bytes(4096, i));
+        }
+        cache.cleanUp();
+
+        assertTrue(cache.residentBytes() <= DataSize.ofKilobytes(10).toBytes());
+        for (int i = 0; i < 5; i++) {
+            AvatarCache.CachedAvatar cached = cache.get(key(i)).orElseThrow();
+            assertEquals("image/png", cached.mediaType());
+            assertArrayEquals(bytes(4096, i), cached.resource().getContentAsByteArray());
+        }
+    }
+
+    @Test
+    public void testInvalidateRemovesBothTiers() {
+        AvatarCache cache = cache(DataSize.ofKilobytes(64).toBytes());
+        for (int i = 0; i < 5; i++) {
+            cache.put(key(i), "image/png", bytes(4096, i));
+        }
+        cache.cleanUp();
+
+        for (int i = 0; i < 5; i++) {
+            cache.invalidate(key(i));
+        }
+        cache.cleanUp();
+
+        assertTrue(IntStream.range(0, 5).allMatch(i -> cache.get(key(i)).isEmpty()));
+        assertEquals(0, cache.residentBytes());
+    }
+}
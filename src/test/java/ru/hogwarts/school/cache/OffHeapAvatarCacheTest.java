@@ -0,0 +1,156 @@
+package ru.hogwarts.school.cache;
+
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class OffHeapAvatarCacheTest {
+
+    private static AvatarKey key(long id) {
+        return AvatarKey.original("%064x".formatted(id));
+    }
+
+    private static byte[] bytes(int length, int seed) {
+        byte[] data = new byte[length];
+        for (int i = 0; i < length; i++) {
+            data[i] = (byte) (i * 31 + seed);
+        }
+        return data;
+    }
+
+    @Test
+    public void testPutAndGetAcrossBlocks() throws Exception {
+        OffHeapAvatarCache cache = new OffHeapAvatarCache(1024, 64);
+        byte[] data = bytes(200, 7);
+
+        assertTrue(cache.put(key(1), "image/png", data));
+
+        AvatarCache.CachedAvatar cached = cache.get(key(1)).orElseThrow();
+        assertEquals("image/png", cached.mediaType());
+        assertEquals(200, cached.resource().contentLength());
+        try (InputStream in = cached.resource().getInputStream()) {
+            assertArrayEquals(data, in.readAllBytes());
+        }
+        assertEquals(200, cache.residentBytes());
+        assertEquals(256, cache.usedBytes());
+        assertEquals(1, cache.hitCount());
+    }
+
+    @Test
+    public void testSkipForRangeReads() throws Exception {
+        OffHeapAvatarCache cache = new OffHeapAvatarCache(1024, 64);
+        byte[] data = bytes(300, 3);
+        cache.put(key(1), "image/png", data);
+
+        try (InputStream in = cache.get(key(1)).orElseThrow().resource().getInputStream()) {
+            assertEquals(130, in.skip(130));
+            assertArrayEquals(Arrays.copyOfRange(data, 130, 170), in.readNBytes(40));
+        }
+    }
+
+    @Test
+    public void testTransferToServletWritesDirectBuffers() throws Exception {
+        OffHeapAvatarCache cache = new OffHeapAvatarCache(1024, 64);
+        byte[] data = bytes(150, 5);
+        cache.put(key(1), "image/png", data);
+        ByteArrayOutputStream written = new ByteArrayOutputStream();
+        List<Boolean> direct = new ArrayList<>();
+        ServletOutputStream out = new ServletOutputStream() {
+            @Override
+            public void write(int b) {
+                written.write(b);
+                direct.add(false);
+            }
+
+            @Override
+            public void write(ByteBuffer buffer) {
+                direct.add(buffer.isDirect());
+                while (buffer.hasRemaining()) {
+                    written.write(buffer.get());
+                }
+            }
+
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setWriteListener(WriteListener writeListener) {
+            }
+        };
+
+        try (InputStream in = cache.get(key(1)).orElseThrow().resource().getInputStream()) {
+            assertEquals(150, in.transferTo(out));
+        }
+
+        assertArrayEquals(data, written.toByteArray());
+        assertEquals(List.of(true, true, true), direct);
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsed() {
+        OffHeapAvatarCache cache = new OffHeapAvatarCache(256, 64);
+        cache.put(key(1), "image/png", bytes(128, 1));
+        cache.put(key(2), "image/png", bytes(128, 2));
+        cache.get(key(1));
+
+        assertTrue(cache.put(key(3), "image/png", bytes(128, 3)));
+
+        assertTrue(cache.get(key(1)).isPresent());
+        assertTrue(cache.get(key(2)).isEmpty());
+        assertTrue(cache.get(key(3)).isPresent());
+        assertEquals(1, cache.evictionCount());
+    }
+
+    @Test
+    public void testReadersKeepEvictedBlocks() throws Exception {
+        OffHeapAvatarCache cache = new OffHeapAvatarCache(128, 64);
+        byte[] first = bytes(128, 1);
+        cache.put(key(1), "image/png", first);
+        AvatarCache.CachedAvatar held = cache.get(key(1)).orElseThrow();
+
+        cache.invalidate(key(1));
+
+        assertFalse(cache.put(key(2), "image/png", bytes(128, 2)));
+        try (InputStream in = held.resource().getInputStream()) {
+            assertArrayEquals(first, in.readAllBytes());
+        }
+        assertEquals(0, cache.residentBytes());
+        assertEquals(0, cache.usedBytes());
+    }
+
+    @Test
+    public void testClosedStreamReleasesBlocksWithoutGc() throws Exception {
+        OffHeapAvatarCache cache = new OffHeapAvatarCache(128, 64);
+        cache.put(key(1), "image/png", bytes(128, 1));
+        AvatarCache.CachedAvatar held = cache.get(key(1)).orElseThrow();
+        try (InputStream in = held.resource().getInputStream()) {
+            in.readAllBytes();
+        }
+
+        cache.invalidate(key(1));
+
+        assertEquals(0, cache.usedBytes());
+        assertThrows(IOException.class, () -> held.resource().getInputStream());
+        assertTrue(cache.put(key(2), "image/png", bytes(128, 2)));
+    }
+
+    @Test
+    public void testRejectsEntriesLargerThanCapacity() {
+        OffHeapAvatarCache cache = new OffHeapAvatarCache(128, 64);
+
+        assertFalse(cache.put(key(1), "image/png", bytes(129, 0)));
+        assertTrue(cache.get(key(1)).isEmpty());
+    }
+}
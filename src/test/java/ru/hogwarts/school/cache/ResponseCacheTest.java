@@ -0,0 +1,77 @@
+package ru.hogwarts.school.cache;
+
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import ru.hogwarts.school.event.FacultyChangedEvent;
+import ru.hogwarts.school.event.StudentChangedEvent;
+import ru.hogwarts.school.event.StudentSnapshot;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ResponseCacheTest {
+
+    private final ResponseCache cache = new ResponseCache(100, 1024);
+    private final AtomicInteger calls = new AtomicInteger();
+
+    private MockHttpServletResponse get(String uri, String ifNoneMatch) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", uri);
+        if (ifNoneMatch != null) {
+            request.addHeader(HttpHeaders.IF_NONE_MATCH, ifNoneMatch);
+        }
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        cache.doFilter(request, response, new MockFilterChain(new HttpServlet() {
+            @Override
+            protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+                resp.setContentType("application/json");
+                resp.getWriter().write(String.valueOf(calls.incrementAndGet()));
+            }
+        }));
+        return response;
+    }
+
+    @Test
+    public void testRepeatedRequestIsServedFromCache() throws Exception {
+        MockHttpServletResponse first = get("/students/total", null);
+        MockHttpServletResponse second = get("/students/total", null);
+
+        assertEquals(1, calls.get());
+        assertEquals("1", second.getContentAsString());
+        assertEquals(first.getHeader(HttpHeaders.ETAG), second.getHeader(HttpHeaders.ETAG));
+        assertEquals(HttpHeaders.ACCEPT_ENCODING, first.getHeader(HttpHeaders.VARY));
+        assertEquals(HttpHeaders.ACCEPT_ENCODING, second.getHeader(HttpHeaders.VARY));
+        assertEquals(304, get("/students/total", first.getHeader(HttpHeaders.ETAG)).getStatus());
+    }
+
+    @Test
+    public void testChangesInvalidateTheirGroups() throws Exception {
+        get("/students/total", null);
+        get("/faculties", null);
+
+        cache.onFacultyChanged(new FacultyChangedEvent(1L));
+        get("/students/total", null);
+        get("/faculties", null);
+        assertEquals(3, calls.get());
+
+        cache.onStudentChanged(StudentChangedEvent.created(new StudentSnapshot(1L, "Harry", 11, null)));
+        get("/students/total", null);
+        get("/faculties", null);
+        assertEquals(5, calls.get());
+    }
+
+    @Test
+    public void testOtherEndpointsAreNotCached() throws Exception {
+        get("/students/stats", null);
+        get("/students/stats", null);
+
+        assertEquals(2, calls.get());
+    }
+}
@@ -0,0 +1,309 @@
+package ru.hogwarts.school.controller;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.webmvc.test.autoconfigure.WebMvcTest;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import ru.hogwarts.school.dto.AvatarInfo;
+import ru.hogwarts.school.dto.CursorPage;
+import ru.hogwarts.school.model.Avatar;
+import ru.hogwarts.school.service.AvatarData;
+import ru.hogwarts.school.service.AvatarIngestionService;
+import ru.hogwarts.school.service.AvatarIngestionService.UploadState;
+import ru.hogwarts.school.service.AvatarIngestionService.UploadStatus;
+import ru.hogwarts.school.service.AvatarService;
+import ru.hogwarts.school.service.AvatarValidator;
+import ru.hogwarts.school.service.AvatarStoreMigrator;
+import ru.hogwarts.school.service.AvatarStoreMigrator.JobState;
+import ru.hogwarts.school.service.AvatarStoreMigrator.MigrationReport;
+import ru.hogwarts.school.service.AvatarStoreMigrator.MigrationStatus;
+import ru.hogwarts.school.service.AvatarStoreMigrator.ReshardStatus;
+import ru.hogwarts.school.store.AvatarStoreMode;
+import ru.hogwarts.school.store.FileAvatarStore;
+
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.hamcrest.Matchers.hasSize;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest(AvatarController.class)
+public class AvatarControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockitoBean
+    private AvatarService avatarService;
+
+    @MockitoBean
+    private AvatarIngestionService avatarIngestionService;
+
+    @MockitoBean
+    private AvatarStoreMigrator avatarStoreMigrator;
+
+    @TempDir
+    Path tempDir;
+
+    private AvatarData avatarFile(String content) throws Exception {
+        Path file = tempDir.resolve("avatar-1.png");
+        Files.writeString(file, content);
+        return new AvatarData("image/png", new FileSystemResource(file));
+    }
+
+    @Test
+    public void testGetAvatarFromDb() throws Exception {
+        when(avatarService.loadAvatar(1L, null)).thenReturn(Optional.of(new AvatarData("image/jpeg", new ByteArrayResource(new byte[]{1, 2, 3}))));
+
+        mockMvc.perform(get("/avatars/1/from-db"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Type", "image/jpeg"))
+                .andExpect(content().bytes(new byte[]{1, 2, 3}));
+
+        verify(avatarService, times(1)).loadAvatar(1L, null);
+    }
+
+    @Test
+    public void testGetAvatarFromFile() throws Exception {
+        when(avatarService.loadAvatar(1L, null)).thenReturn(Optional.of(avatarFile("0123456789")));
+
+        mockMvc.perform(get("/avatars/1/from-file"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Type", "image/png"))
+                .andExpect(header().string("Content-Length", "10"))
+                .andExpect(header().string("Accept-Ranges", "bytes"))
+                .andExpect(content().bytes("0123456789".getBytes(StandardCharsets.UTF_8)));
+
+        verify(avatarService, times(1)).loadAvatar(1L, null);
+    }
+
+    @Test
+    public void testGetAvatarFromFile_Size() throws Exception {
+        when(avatarService.loadAvatar(1L, 64)).thenReturn(Optional.of(new AvatarData("image/jpeg", new ByteArrayResource(new byte[]{9, 8}))));
+
+        mockMvc.perform(get("/avatars/1/from-file").param("size", "64"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Type", "image/jpeg"))
+                .andExpect(content().bytes(new byte[]{9, 8}));
+
+        verify(avatarService, times(1)).loadAvatar(1L, 64);
+    }
+
+    @Test
+    public void testGetAvatarFromFile_Range() throws Exception {
+        when(avatarService.loadAvatar(1L, null)).thenReturn(Optional.of(avatarFile("0123456789")));
+
+        mockMvc.perform(get("/avatars/1/from-file").header("Range", "bytes=2-5"))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string("Content-Range", "bytes 2-5/10"))
+                .andExpect(header().string("Content-Length", "4"))
+                .andExpect(content().bytes("2345".getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    public void testGetAvatarFromFile_RangeNotSatisfiable() throws Exception {
+        when(avatarService.loadAvatar(1L, null)).thenReturn(Optional.of(avatarFile("0123456789")));
+
+        mockMvc.perform(get("/avatars/1/from-file").header("Range", "bytes=20-30"))
+                .andExpect(status().isRequestedRangeNotSatisfiable())
+                .andExpect(header().string("Content-Range", "bytes */10"));
+    }
+
+    @Test
+    public void testGetAvatarFromFile_NotModified() throws Exception {
+        when(avatarService.findValidator(1L, null)).thenReturn(Optional.of(new AvatarValidator("abc123", Instant.parse("2024-01-01T00:00:00Z"))));
+
+        mockMvc.perform(get("/avatars/1/from-file").header("If-None-Match", "\"abc123\""))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", "\"abc123\""))
+                .andExpect(header().string("Cache-Control", "max-age=60, must-revalidate, public"));
+
+        verify(avatarService, never()).loadAvatar(any(), any());
+    }
+
+    @Test
+    public void testGetAvatarFromFile_CacheHeaders() throws Exception {
+        when(avatarService.findValidator(1L, null)).thenReturn(Optional.of(new AvatarValidator("abc123", Instant.parse("2024-01-01T00:00:00Z"))));
+        when(avatarService.loadAvatar(1L, null)).thenReturn(Optional.of(avatarFile("0123456789")));
+
+        mockMvc.perform(get("/avatars/1/from-file"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"abc123\""))
+                .andExpect(header().exists("Last-Modified"))
+                .andExpect(header().string("Cache-Control", "max-age=60, must-revalidate, public"));
+    }
+
+    @Test
+    public void testGetAvatarFromFile_NotFound() throws Exception {
+        when(avatarService.loadAvatar(1L, null)).thenReturn(Optional.empty());
+
+        mockMvc.perform(get("/avatars/1/from-file"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    public void testGetAllAvatars() throws Exception {
+        CursorPage<AvatarInfo> page = new CursorPage<>(List.of(new AvatarInfo(10L, 1L, "image/png", 2048)), CursorPage.encode(10L));
+        when(avatarService.getAllAvatars(null, 5)).thenReturn(page);
+
+        mockMvc.perform(get("/avatars"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items", hasSize(1)))
+                .andExpect(jsonPath("$.items[0].studentId").value(1))
+                .andExpect(jsonPath("$.items[0].fileSize").value(2048))
+                .andExpect(jsonPath("$.items[0].url").value("/avatars/1/from-file"))
+                .andExpect(jsonPath("$.items[0].data").doesNotExist())
+                .andExpect(jsonPath("$.nextCursor").value(CursorPage.encode(10L)));
+
+        verify(avatarService, times(1)).getAllAvatars(null, 5);
+    }
+
+    @Test
+    public void testSubmitAvatarUpload() throws Exception {
+        UUID ticket = UUID.randomUUID();
+        MockMultipartFile file = new MockMultipartFile("file", "avatar.png", "image/png", new byte[]{1, 2, 3});
+        when(avatarIngestionService.submit(eq(1L), any())).thenReturn(new UploadStatus(ticket, 1L, UploadState.QUEUED, null, null, Instant.now()));
+
+        mockMvc.perform(multipart("/avatars/uploads").file(file).param("studentId", "1"))
+                .andExpect(status().isAccepted())
+                .andExpect(header().string("Location", "/avatars/uploads/" + ticket))
+                .andExpect(jsonPath("$.ticket").value(ticket.toString()))
+                .andExpect(jsonPath("$.state").value("QUEUED"));
+    }
+
+    @Test
+    public void testSubmitAvatarUpload_QueueFull() throws Exception {
+        MockMultipartFile file = new MockMultipartFile("file", "avatar.png", "image/png", new byte[]{1, 2, 3});
+        when(avatarIngestionService.submit(eq(1L), any())).thenThrow(new RejectedExecutionException("full"));
+
+        mockMvc.perform(multipart("/avatars/uploads").file(file).param("studentId", "1"))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().exists("Retry-After"));
+    }
+
+    @Test
+    public void testGetAvatarUploadStatus() throws Exception {
+        UUID ticket = UUID.randomUUID();
+        when(avatarIngestionService.getStatus(ticket)).thenReturn(Optional.of(new UploadStatus(ticket, 1L, UploadState.DONE, 10L, null, Instant.now())));
+
+        mockMvc.perform(get("/avatars/uploads/" + ticket))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.state").value("DONE"))
+                .andExpect(jsonPath("$.avatarId").value(10));
+    }
+
+    @Test
+    public void testGetAvatarUploadStatus_NotFound() throws Exception {
+        UUID ticket = UUID.randomUUID();
+        when(avatarIngestionService.getStatus(ticket)).thenReturn(Optional.empty());
+
+        mockMvc.perform(get("/avatars/uploads/" + ticket))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    public void testGetAvatarArchive() throws Exception {
+        List<Avatar> avatars = List.of(new Avatar());
+        when(avatarService.findAvatarsForArchive(List.of(1L, 2L), null)).thenReturn(avatars);
+        doAnswer(invocation -> {
+            invocation.getArgument(2, OutputStream.class).write(new byte[]{'P', 'K'});
+            return null;
+        }).when(avatarService).writeArchive(eq(avatars), eq(64), any());
+
+        MvcResult result = mockMvc.perform(get("/avatars/archive").param("studentIds", "1", "2").param("size", "64"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Type", "application/zip"))
+                .andExpect(header().string("Content-Disposition", "attachment; filename=\"avatars.zip\""))
+                .andExpect(content().bytes(new byte[]{'P', 'K'}));
+    }
+
+    @Test
+    public void testGetAvatarArchive_NoFilter() throws Exception {
+        when(avatarService.findAvatarsForArchive(null, null)).thenThrow(new IllegalArgumentException("Нужно указать studentIds или facultyId"));
+
+        mockMvc.perform(get("/avatars/archive"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void testMigrateAvatars() throws Exception {
+        UUID ticket = UUID.randomUUID();
+        when(avatarStoreMigrator.startMigration(AvatarStoreMode.DB, AvatarStoreMode.FILE, 50, true))
+                .thenReturn(new MigrationStatus(ticket, JobState.RUNNING, null, null, Instant.now()));
+        when(avatarStoreMigrator.getMigrationStatus(ticket)).thenReturn(Optional.of(new MigrationStatus(ticket, JobState.DONE,
+                new MigrationReport(AvatarStoreMode.DB, AvatarStoreMode.FILE, 3, 7, 2, 0), null, Instant.now())));
+
+        mockMvc.perform(post("/avatars/store/migrate").param("from", "DB").param("to", "FILE").param("batchSize", "50").param("deleteSource", "true"))
+                .andExpect(status().isAccepted())
+                .andExpect(header().string("Location", "/avatars/store/migrate/" + ticket))
+                .andExpect(jsonPath("$.state").value("RUNNING"));
+
+        mockMvc.perform(get("/avatars/store/migrate/" + ticket))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.state").value("DONE"))
+                .andExpect(jsonPath("$.report.legacy").value(3))
+                .andExpect(jsonPath("$.report.migrated").value(7))
+                .andExpect(jsonPath("$.report.skipped").value(2))
+                .andExpect(jsonPath("$.report.failed").value(0));
+
+        verify(avatarStoreMigrator, times(1)).startMigration(AvatarStoreMode.DB, AvatarStoreMode.FILE, 50, true);
+    }
+
+    @Test
+    public void testMigrateAvatars_AlreadyRunning() throws Exception {
+        when(avatarStoreMigrator.startMigration(AvatarStoreMode.DB, AvatarStoreMode.FILE, 100, false)).thenThrow(new IllegalStateException("Перенос аватаров уже выполняется"));
+
+        mockMvc.perform(post("/avatars/store/migrate").param("from", "DB").param("to", "FILE"))
+                .andExpect(status().isConflict());
+    }
+
+    @Test
+    public void testReshardAvatars() throws Exception {
+        UUID ticket = UUID.randomUUID();
+        ReshardStatus running = new ReshardStatus(ticket, JobState.RUNNING, null, null, Instant.now());
+        when(avatarStoreMigrator.startReshard(8)).thenReturn(running);
+        when(avatarStoreMigrator.getReshardStatus(ticket)).thenReturn(Optional.of(new ReshardStatus(ticket, JobState.DONE, new FileAvatarStore.ReshardReport(2, 10, 3, 0), null, Instant.now())));
+
+        mockMvc.perform(post("/avatars/store/reshard").param("threads", "8"))
+                .andExpect(status().isAccepted())
+                .andExpect(header().string("Location", "/avatars/store/reshard/" + ticket))
+                .andExpect(jsonPath("$.state").value("RUNNING"));
+
+        mockMvc.perform(get("/avatars/store/reshard/" + ticket))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.state").value("DONE"))
+                .andExpect(jsonPath("$.report.moved").value(10));
+
+        mockMvc.perform(get("/avatars/store/reshard/" + UUID.randomUUID()))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    public void testReshardAvatars_AlreadyRunning() throws Exception {
+        when(avatarStoreMigrator.startReshard(4)).thenThrow(new IllegalStateException("Перераскладка хранилища уже выполняется"));
+
+        mockMvc.perform(post("/avatars/store/reshard"))
+                .andExpect(status().isConflict());
+    }
+}
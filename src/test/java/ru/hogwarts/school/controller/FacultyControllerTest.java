@@ -1,20 +1,26 @@
 package ru.hogwarts.school.controller;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
-import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.webmvc.test.autoconfigure.WebMvcTest;
 import org.springframework.http.MediaType;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
+import ru.hogwarts.school.dto.AgeStats;
+import ru.hogwarts.school.dto.CursorPage;
+import ru.hogwarts.school.dto.FacultyStats;
+import ru.hogwarts.school.dto.StudentDto;
 import ru.hogwarts.school.model.Faculty;
 import ru.hogwarts.school.model.Student;
 import ru.hogwarts.school.service.FacultyService;
+import tools.jackson.databind.ObjectMapper;
 
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.TreeMap;
 
 import static org.hamcrest.Matchers.*;
 import static org.mockito.ArgumentMatchers.any;
@@ -31,7 +37,7 @@ public class FacultyControllerTest {
     @Autowired
     private ObjectMapper objectMapper;
 
-    @MockBean
+    @MockitoBean
     private FacultyService facultyService;
 
     @Test
@@ -45,11 +51,49 @@ public class FacultyControllerTest {
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.id").value(1))
                 .andExpect(jsonPath("$.name").value("Gryffindor"))
-                .andExpect(jsonPath("$.color").value("Scarlet"));
+                .andExpect(jsonPath("$.color").value("Scarlet"))
+                .andExpect(jsonPath("$.students").doesNotExist());
 
         verify(facultyService, times(1)).getFaculty(1L);
     }
 
+    @Test
+    public void testGetFacultyById_NotModified() throws Exception {
+        Faculty faculty = new Faculty("Gryffindor", "Scarlet");
+        faculty.setId(1L);
+
+        when(facultyService.getFaculty(1L)).thenReturn(Optional.of(faculty));
+
+        mockMvc.perform(get("/faculties/1").header("If-None-Match", "\"faculty-1-0\""))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", "\"faculty-1-0\""))
+                .andExpect(content().string(""));
+
+        mockMvc.perform(get("/faculties/1").header("If-None-Match", "\"faculty-1-1\""))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"faculty-1-0\""));
+    }
+
+    @Test
+    public void testGetFacultyById_ExpandStudents() throws Exception {
+        Faculty faculty = new Faculty("Gryffindor", "Scarlet");
+        faculty.setId(1L);
+        Student student = new Student("Harry", 11);
+        student.setId(7L);
+        student.setFaculty(faculty);
+        faculty.getStudents().add(student);
+
+        when(facultyService.getFacultyWithStudents(1L)).thenReturn(Optional.of(faculty));
+
+        mockMvc.perform(get("/faculties/1").param("expand", "students"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.students", hasSize(1)))
+                .andExpect(jsonPath("$.students[0].name").value("Harry"))
+                .andExpect(jsonPath("$.students[0].facultyId").value(1));
+
+        verify(facultyService, never()).getFaculty(any());
+    }
+
     @Test
     public void testGetFacultyById_NotFound() throws Exception {
         when(facultyService.getFaculty(999L)).thenReturn(Optional.empty());
@@ -67,13 +111,28 @@ public class FacultyControllerTest {
         Faculty faculty2 = new Faculty("Slytherin", "Green");
         faculty2.setId(2L);
 
-        when(facultyService.getAllFaculties()).thenReturn(Arrays.asList(faculty1, faculty2));
+        when(facultyService.getAllFaculties(null, 50)).thenReturn(new CursorPage<>(Arrays.asList(faculty1, faculty2), null));
 
         mockMvc.perform(get("/faculties"))
                 .andExpect(status().isOk())
-                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$.items", hasSize(2)))
+                .andExpect(jsonPath("$.items[0].name").value("Gryffindor"))
+                .andExpect(jsonPath("$.items[1].name").value("Slytherin"))
+                .andExpect(jsonPath("$.nextCursor").doesNotExist());
+    }
+
+    @Test
+    public void testGetFacultyStats() throws Exception {
+        AgeStats ages = AgeStats.of(new TreeMap<>(Map.of(11, 2L, 12, 1L)));
+        when(facultyService.getFacultyStats()).thenReturn(List.of(new FacultyStats(1L, "Gryffindor", ages)));
+
+        mockMvc.perform(get("/faculties/stats"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
                 .andExpect(jsonPath("$[0].name").value("Gryffindor"))
-                .andExpect(jsonPath("$[1].name").value("Slytherin"));
+                .andExpect(jsonPath("$[0].ages.count").value(3))
+                .andExpect(jsonPath("$[0].ages.maxAge").value(12))
+                .andExpect(jsonPath("$[0].ages.ageHistogram.11").value(2));
     }
 
     @Test
@@ -103,13 +162,18 @@ public class FacultyControllerTest {
                 .andExpect(jsonPath("$[0].color").value("Blue"));
     }
 
+    @Test
+    public void testGetAllFacultiesWithStudents_DeletedDuringRead() throws Exception {
+        when(facultyService.getAllFacultiesWithStudents(null, 50))
+                .thenThrow(new IllegalStateException("Факультет 1 удалён во время чтения страницы"));
+
+        mockMvc.perform(get("/faculties").param("expand", "students"))
+                .andExpect(status().isConflict());
+    }
+
     @Test
     public void testGetStudentsByFacultyId() throws Exception {
-        Student student1 = new Student("Hermione", 20);
-        student1.setId(1L);
-        Student student2 = new Student("Ron", 19);
-        student2.setId(2L);
-        List<Student> students = Arrays.asList(student1, student2);
+        List<StudentDto> students = Arrays.asList(new StudentDto(1L, "Hermione", 20, 1L), new StudentDto(2L, "Ron", 19, 1L));
 
         when(facultyService.getStudentsByFacultyId(1L)).thenReturn(students);
 
@@ -117,7 +181,8 @@ public class FacultyControllerTest {
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$", hasSize(2)))
                 .andExpect(jsonPath("$[0].name").value("Hermione"))
-                .andExpect(jsonPath("$[1].name").value("Ron"));
+                .andExpect(jsonPath("$[1].name").value("Ron"))
+                .andExpect(jsonPath("$[1].facultyId").value(1));
     }
 
     @Test
@@ -1,22 +1,37 @@
 package ru.hogwarts.school.controller;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
-import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.webmvc.test.autoconfigure.WebMvcTest;
 import org.springframework.http.MediaType;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
-import ru.hogwarts.school.model.Faculty;
+import org.springframework.test.web.servlet.MvcResult;
+import ru.hogwarts.school.dto.AgeRangeIds;
+import ru.hogwarts.school.dto.AgeStats;
+import ru.hogwarts.school.dto.CursorPage;
+import ru.hogwarts.school.dto.FacultyDto;
+import ru.hogwarts.school.dto.ImportReport;
+import ru.hogwarts.school.dto.StudentDetails;
+import ru.hogwarts.school.dto.StudentSearchHit;
 import ru.hogwarts.school.model.Student;
+import ru.hogwarts.school.service.StudentExportService;
+import ru.hogwarts.school.service.StudentImportService;
 import ru.hogwarts.school.service.StudentService;
+import tools.jackson.databind.ObjectMapper;
 
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.TreeMap;
 
 import static org.hamcrest.Matchers.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
@@ -31,9 +46,15 @@ public class StudentControllerTest {
     @Autowired
     private ObjectMapper objectMapper;
 
-    @MockBean
+    @MockitoBean
     private StudentService studentService;
 
+    @MockitoBean
+    private StudentExportService studentExportService;
+
+    @MockitoBean
+    private StudentImportService studentImportService;
+
     @Test
     public void testGetStudentById() throws Exception {
         Student student = new Student("John Doe", 20);
@@ -46,6 +67,25 @@ public class StudentControllerTest {
         verify(studentService, times(1)).getStudent(1L);
     }
 
+    @Test
+    public void testGetStudentById_NotModified() throws Exception {
+        Student student = new Student("John Doe", 20);
+        student.setId(1L);
+
+        when(studentService.getStudent(1L)).thenReturn(Optional.of(student));
+
+        mockMvc.perform(get("/students/1").header("If-None-Match", "\"student-1-0\"")).andExpect(status().isNotModified()).andExpect(header().string("ETag", "\"student-1-0\"")).andExpect(content().string(""));
+    }
+
+    @Test
+    public void testGetStudentById_ExpandFaculty() throws Exception {
+        when(studentService.getStudentDetails(1L)).thenReturn(Optional.of(new StudentDetails(1L, "Harry Potter", 11, 1L, "Gryffindor", "Scarlet")));
+
+        mockMvc.perform(get("/students/1").param("expand", "faculty")).andExpect(status().isOk()).andExpect(jsonPath("$.name").value("Harry Potter")).andExpect(jsonPath("$.faculty.name").value("Gryffindor")).andExpect(jsonPath("$.faculty.students").doesNotExist());
+
+        verify(studentService, never()).getStudent(any());
+    }
+
     @Test
     public void testGetStudentById_NotFound() throws Exception {
         when(studentService.getStudent(999L)).thenReturn(Optional.empty());
@@ -62,11 +102,56 @@ public class StudentControllerTest {
         Student student2 = new Student("Jane Smith", 22);
         student2.setId(2L);
 
-        when(studentService.getAllStudents()).thenReturn(Arrays.asList(student1, student2));
+        String cursor = CursorPage.encode(2L);
+        when(studentService.getAllStudents(null, 2)).thenReturn(new CursorPage<>(Arrays.asList(student1, student2), cursor));
+
+        mockMvc.perform(get("/students").param("limit", "2")).andExpect(status().isOk()).andExpect(jsonPath("$.items", hasSize(2))).andExpect(jsonPath("$.items[0].name").value("John Doe")).andExpect(jsonPath("$.items[1].name").value("Jane Smith")).andExpect(jsonPath("$.nextCursor").value(cursor));
+
+        verify(studentService, times(1)).getAllStudents(null, 2);
+    }
+
+    @Test
+    public void testGetAllStudents_InvalidCursor() throws Exception {
+        when(studentService.getAllStudents("bad", 50)).thenThrow(new IllegalArgumentException("Некорректный курсор: bad"));
+
+        mockMvc.perform(get("/students").param("cursor", "bad")).andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void testExportStudents() throws Exception {
+        byte[] ndjson = "{\"id\":1,\"name\":\"John Doe\",\"age\":20}\n".getBytes(StandardCharsets.UTF_8);
+        doAnswer(invocation -> {
+            invocation.getArgument(0, OutputStream.class).write(ndjson);
+            return 1L;
+        }).when(studentExportService).exportStudents(any(), eq(false));
+
+        MvcResult result = mockMvc.perform(get("/students/export")).andExpect(request().asyncStarted()).andReturn();
+
+        mockMvc.perform(asyncDispatch(result)).andExpect(status().isOk()).andExpect(header().string("Content-Type", "application/x-ndjson")).andExpect(header().doesNotExist("Content-Encoding")).andExpect(content().bytes(ndjson));
+    }
+
+    @Test
+    public void testImportStudentsCsv() throws Exception {
+        ImportReport report = new ImportReport(2, 1, List.of(new ImportReport.RowError(3, "Возраст не может быть меньше или равен нулю")));
+        when(studentImportService.importCsv(any())).thenReturn(report);
 
-        mockMvc.perform(get("/students")).andExpect(status().isOk()).andExpect(jsonPath("$", hasSize(2))).andExpect(jsonPath("$[0].name").value("John Doe")).andExpect(jsonPath("$[1].name").value("Jane Smith"));
+        mockMvc.perform(post("/students/import").contentType("text/csv").content("name,age\nHarry,11\nRon,11\nNobody,0\n")).andExpect(status().isOk()).andExpect(jsonPath("$.imported").value(2)).andExpect(jsonPath("$.failed").value(1)).andExpect(jsonPath("$.errors[0].row").value(3));
 
-        verify(studentService, times(1)).getAllStudents();
+        verify(studentImportService, never()).importJson(any());
+    }
+
+    @Test
+    public void testSearchStudents() throws Exception {
+        when(studentService.searchStudents("her", 0, 20)).thenReturn(List.of(new StudentSearchHit(3L, "Hermione Granger", 11, 1L, 1.0)));
+
+        mockMvc.perform(get("/students/search").param("q", "her")).andExpect(status().isOk()).andExpect(jsonPath("$", hasSize(1))).andExpect(jsonPath("$[0].name").value("Hermione Granger")).andExpect(jsonPath("$[0].score").value(1.0));
+    }
+
+    @Test
+    public void testSearchStudents_QueryTooShort() throws Exception {
+        when(studentService.searchStudents("h", 0, 20)).thenThrow(new IllegalArgumentException("Строка поиска должна содержать не меньше 3 символов"));
+
+        mockMvc.perform(get("/students/search").param("q", "h")).andExpect(status().isBadRequest());
     }
 
     @Test
@@ -95,14 +180,7 @@ public class StudentControllerTest {
 
     @Test
     public void testGetFacultyByStudentId() throws Exception {
-        Faculty faculty = new Faculty("Gryffindor", "Scarlet");
-        faculty.setId(1L);
-
-        Student student = new Student("Harry Potter", 11);
-        student.setId(1L);
-        student.setFaculty(faculty);
-
-        when(studentService.getStudent(1L)).thenReturn(Optional.of(student));
+        when(studentService.getFacultyByStudentId(1L)).thenReturn(new FacultyDto(1L, "Gryffindor", "Scarlet", null));
 
         mockMvc.perform(get("/students/1/faculty")).andExpect(status().isOk()).andExpect(jsonPath("$.id").value(1)).andExpect(jsonPath("$.name").value("Gryffindor")).andExpect(jsonPath("$.color").value("Scarlet"));
 
@@ -121,6 +199,13 @@ public class StudentControllerTest {
         verify(studentService, times(1)).addStudent(any(Student.class));
     }
 
+    @Test
+    public void testAddStudent_GroupCommitTimeout() throws Exception {
+        when(studentService.addStudent(any(Student.class))).thenThrow(new IllegalStateException("Групповая запись студентов не ответила за PT2S"));
+
+        mockMvc.perform(post("/students").contentType(MediaType.APPLICATION_JSON).content(objectMapper.writeValueAsString(new Student("New Student", 22)))).andExpect(status().isServiceUnavailable());
+    }
+
     @Test
     public void testUpdateStudent() throws Exception {
         Student student = new Student("Updated Name", 23);
@@ -177,6 +262,28 @@ public class StudentControllerTest {
         mockMvc.perform(get("/students/average-age")).andExpect(status().isOk()).andExpect(content().string("20.5"));
     }
 
+    @Test
+    public void testGetStudentStats() throws Exception {
+        when(studentService.getStudentStats()).thenReturn(new AgeStats(3, 12.0, 11, 14, new TreeMap<>(Map.of(11, 2L, 14, 1L))));
+
+        mockMvc.perform(get("/students/stats")).andExpect(status().isOk()).andExpect(jsonPath("$.count").value(3)).andExpect(jsonPath("$.minAge").value(11)).andExpect(jsonPath("$.maxAge").value(14)).andExpect(jsonPath("$.ageHistogram.11").value(2));
+    }
+
+    @Test
+    public void testGetStudentIdsByAgeBetween() throws Exception {
+        when(studentService.getStudentIdsByAgeBetween(11, 14, 2L)).thenReturn(new AgeRangeIds(11, 14, 2L, 2, new long[]{3L, 7L}));
+
+        mockMvc.perform(get("/students/age/ids").param("min", "11").param("max", "14").param("facultyId", "2")).andExpect(status().isOk()).andExpect(jsonPath("$.count").value(2)).andExpect(jsonPath("$.ids[1]").value(7));
+    }
+
+    @Test
+    public void testCountStudentsByAgeBetween() throws Exception {
+        when(studentService.countStudentsByAgeBetween(11, 14, null)).thenReturn(42L);
+
+        mockMvc.perform(get("/students/age/count").param("min", "11").param("max", "14")).andExpect(status().isOk()).andExpect(content().string("42"));
+        verify(studentService, never()).getStudentIdsByAgeBetween(anyInt(), anyInt(), any());
+    }
+
     @Test
     public void testGetLastFiveStudents() throws Exception {
         Student s1 = new Student("Last", 20);
@@ -0,0 +1,121 @@
+package ru.hogwarts.school.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.data.domain.Limit;
+import org.springframework.transaction.PlatformTransactionManager;
+import ru.hogwarts.school.model.Avatar;
+import ru.hogwarts.school.repository.AvatarRepository;
+import ru.hogwarts.school.service.AvatarStoreMigrator.JobState;
+import ru.hogwarts.school.service.AvatarStoreMigrator.MigrationReport;
+import ru.hogwarts.school.service.AvatarStoreMigrator.MigrationStatus;
+import ru.hogwarts.school.store.AvatarStoreMode;
+import ru.hogwarts.school.store.AvatarStores;
+import ru.hogwarts.school.store.DbAvatarStore;
+import ru.hogwarts.school.store.FileAvatarStore;
+
+import javax.sql.DataSource;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+public class AvatarStoreMigratorTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final AvatarRepository avatarRepository = mock(AvatarRepository.class);
+    private FileAvatarStore fileStore;
+    private AvatarStoreMigrator migrator;
+
+    @BeforeEach
+    public void setUp() {
+        fileStore = new FileAvatarStore(tempDir.resolve("store"), 2);
+        AvatarStores stores = new AvatarStores(AvatarStoreMode.FILE, fileStore, mock(DbAvatarStore.class), null);
+        // На базе без старой схемы колонки avatar.data нет
+        DataSource dataSource = mock(DataSource.class, RETURNS_DEEP_STUBS);
+        migrator = new AvatarStoreMigrator(avatarRepository, stores, fileStore, dataSource, mock(PlatformTransactionManager.class),
+                tempDir.toString(), Duration.ofMinutes(1));
+        when(avatarRepository.findContentHashesAfter(any(), any())).thenReturn(List.of());
+        when(avatarRepository.save(any(Avatar.class))).thenAnswer(invocation -> invocation.getArgument(0));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        migrator.shutdown();
+    }
+
+    private static Avatar legacyAvatar(long id, Path file) {
+        Avatar avatar = new Avatar(file.toString(), 3, "image/png");
+        avatar.setId(id);
+        return avatar;
+    }
+
+    private MigrationStatus await(MigrationStatus started) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        MigrationStatus status = started;
+        while (status.state() == JobState.RUNNING && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+            status = migrator.getMigrationStatus(started.ticket()).orElseThrow();
+        }
+        return status;
+    }
+
+    @Test
+    public void testLegacyFileIsHashedAndMovedToTargetStore() throws Exception {
+        byte[] bytes = {1, 2, 3};
+        Path legacyFile = Files.write(tempDir.resolve("avatar-1.png"), bytes);
+        Avatar avatar = legacyAvatar(1L, legacyFile);
+        when(avatarRepository.findByContentHashIsNullAndIdGreaterThanOrderById(anyLong(), any())).thenReturn(List.of(avatar), List.of());
+
+        MigrationStatus status = await(migrator.startMigration(AvatarStoreMode.DB, AvatarStoreMode.FILE, 10, true));
+
+        assertEquals(JobState.DONE, status.state());
+        assertEquals(1, status.report().legacy());
+        String hash = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+        assertEquals(hash, avatar.getContentHash());
+        assertEquals(fileStore.location(hash), avatar.getFilePath());
+        assertTrue(fileStore.contains(hash));
+        assertFalse(Files.exists(legacyFile));
+        verify(avatarRepository).lockContent(AvatarService.contentLockKey(hash));
+        verify(avatarRepository, never()).releaseLegacyData(any());
+    }
+
+    @Test
+    public void testLegacyAvatarWithoutContentIsCountedAsFailed() throws Exception {
+        Avatar missing = legacyAvatar(2L, tempDir.resolve("avatar-2.png"));
+        when(avatarRepository.findByContentHashIsNullAndIdGreaterThanOrderById(0L, Limit.of(1))).thenReturn(List.of(missing));
+        when(avatarRepository.findByContentHashIsNullAndIdGreaterThanOrderById(2L, Limit.of(1))).thenReturn(List.of());
+
+        MigrationReport report = migrator.migrate(AvatarStoreMode.DB, AvatarStoreMode.FILE, 1, false);
+
+        assertEquals(0, report.legacy());
+        assertEquals(1, report.failed());
+        assertNull(missing.getContentHash());
+        verify(avatarRepository, never()).save(any());
+    }
+
+    @Test
+    public void testSecondMigrationIsRejectedWhileRunning() throws Exception {
+        when(avatarRepository.findByContentHashIsNullAndIdGreaterThanOrderById(anyLong(), any())).thenAnswer(invocation -> {
+            Thread.sleep(200);
+            return List.of();
+        });
+
+        MigrationStatus started = migrator.startMigration(AvatarStoreMode.DB, AvatarStoreMode.FILE, 10, false);
+
+        assertThrows(IllegalStateException.class, () -> migrator.startMigration(AvatarStoreMode.DB, AvatarStoreMode.FILE, 10, false));
+        assertEquals(JobState.DONE, await(started).state());
+        assertThrows(IllegalArgumentException.class, () -> migrator.startMigration(AvatarStoreMode.FILE, AvatarStoreMode.FILE, 10, false));
+    }
+}
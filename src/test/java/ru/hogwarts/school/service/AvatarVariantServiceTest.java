@@ -0,0 +1,92 @@
+package ru.hogwarts.school.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.hogwarts.school.store.AvatarStoreMode;
+import ru.hogwarts.school.store.AvatarStores;
+import ru.hogwarts.school.store.DbAvatarStore;
+import ru.hogwarts.school.store.DualAvatarStore;
+import ru.hogwarts.school.store.FileAvatarStore;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.Mockito.*;
+
+public class AvatarVariantServiceTest {
+
+    @TempDir
+    Path tempDir;
+
+    private AvatarVariantService service;
+
+    @BeforeEach
+    public void setUp() {
+        FileAvatarStore store = new FileAvatarStore(tempDir, 0);
+        service = new AvatarVariantService(new AvatarStores(AvatarStoreMode.FILE, store, null, null), tempDir.toString(), List.of(64), 0.85f, 100, 1, 1);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        service.shutdown();
+    }
+
+    private static byte[] png(int width, int height) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB), "png", out);
+        return out.toByteArray();
+    }
+
+    @Test
+    public void testDecodesImageWithinPixelLimit() throws Exception {
+        BufferedImage image = service.decode(new ByteArrayInputStream(png(10, 10)));
+
+        assertEquals(10, image.getWidth());
+        assertEquals(10, image.getHeight());
+    }
+
+    @Test
+    public void testRejectsImageAbovePixelLimitBeforeDecoding() throws Exception {
+        byte[] data = png(20, 10);
+
+        assertThrows(IllegalArgumentException.class, () -> service.decode(new ByteArrayInputStream(data)));
+    }
+
+    @Test
+    public void testUnsupportedFormatIsNotAnImage() throws Exception {
+        assertNull(service.decode(new ByteArrayInputStream(new byte[]{1, 2, 3})));
+    }
+
+    @Test
+    public void testDualStoreKeepsVariantsInFileStore() throws Exception {
+        String hash = "ab".repeat(32);
+        FileAvatarStore fileStore = new FileAvatarStore(tempDir.resolve("store"), 2);
+        DbAvatarStore dbStore = mock(DbAvatarStore.class);
+        DualAvatarStore dualStore = new DualAvatarStore(fileStore, dbStore);
+        AvatarVariantService dualService = new AvatarVariantService(new AvatarStores(AvatarStoreMode.DUAL, fileStore, dbStore, dualStore),
+                tempDir.toString(), List.of(64), 0.85f, 100, 1, 1);
+        try {
+            Path original = tempDir.resolve("original.png");
+            Files.write(original, png(10, 5));
+            dualStore.save(hash, original);
+
+            dualService.generate(hash);
+
+            assertTrue(dualService.hasVariant(hash, 64));
+            assertTrue(dualService.loadVariant(hash, 64).isPresent());
+            verify(dbStore, never()).save(contains("-"), any());
+        } finally {
+            dualService.shutdown();
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package ru.hogwarts.school.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.PlatformTransactionManager;
+import ru.hogwarts.school.model.Student;
+import ru.hogwarts.school.repository.StudentRepository;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+public class StudentGroupCommitterTest {
+
+    private final StudentRepository studentRepository = mock(StudentRepository.class);
+    private final CountDownLatch flusherStuck = new CountDownLatch(1);
+    private StudentGroupCommitter committer;
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        flusherStuck.countDown();
+        committer.shutdown();
+    }
+
+    @Test
+    public void testSubmitTimesOutWhenFlusherStalls() {
+        PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+        when(transactionManager.getTransaction(any())).thenAnswer(invocation -> {
+            flusherStuck.await();
+            return null;
+        });
+        committer = new StudentGroupCommitter(studentRepository, transactionManager, mock(ApplicationEventPublisher.class),
+                true, 10, Duration.ofMillis(1), 100, Duration.ofMillis(100));
+
+        CompletableFuture<Student> future = committer.submit(new Student("Harry", 11));
+
+        CompletionException e = assertThrows(CompletionException.class, future::join);
+        assertInstanceOf(TimeoutException.class, e.getCause());
+        flusherStuck.countDown();
+        verify(studentRepository, after(300).never()).saveAll(anyList());
+    }
+
+    @Test
+    public void testClaimedStudentOutlivesSubmitTimeout() {
+        when(studentRepository.saveAll(anyList())).thenAnswer(invocation -> {
+            Thread.sleep(300);
+            return invocation.getArgument(0);
+        });
+        committer = new StudentGroupCommitter(studentRepository, mock(PlatformTransactionManager.class), mock(ApplicationEventPublisher.class),
+                true, 10, Duration.ofMillis(1), 100, Duration.ofMillis(100));
+
+        Student student = new Student("Harry", 11);
+        CompletableFuture<Student> future = committer.submit(student);
+
+        assertSame(student, future.join());
+    }
+
+    @Test
+    public void testTimedOutStudentIsNotWritten() {
+        committer = new StudentGroupCommitter(studentRepository, mock(PlatformTransactionManager.class), mock(ApplicationEventPublisher.class),
+                true, 10, Duration.ofMillis(200), 100, Duration.ofMillis(1));
+        when(studentRepository.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        CompletableFuture<Student> future = committer.submit(new Student("Harry", 11));
+
+        assertThrows(CompletionException.class, future::join);
+        verify(studentRepository, after(500).never()).saveAll(anyList());
+    }
+}
@@ -0,0 +1,121 @@
+package ru.hogwarts.school.stats;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import ru.hogwarts.school.dto.StudentAgeRow;
+import ru.hogwarts.school.event.StudentChangedEvent;
+import ru.hogwarts.school.event.StudentSnapshot;
+import ru.hogwarts.school.repository.StudentRepository;
+
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class StudentColumnarIndexTest {
+
+    private StudentRepository studentRepository;
+
+    @BeforeEach
+    public void setUp() {
+        studentRepository = mock(StudentRepository.class);
+        when(studentRepository.streamAgeRows()).thenAnswer(invocation -> Stream.of(
+                new StudentAgeRow(1L, 12, 1L),
+                new StudentAgeRow(2L, 11, 2L),
+                new StudentAgeRow(3L, 14, null),
+                new StudentAgeRow(4L, 12, 2L)));
+    }
+
+    private StudentColumnarIndex index(int deltaLimit) {
+        StudentColumnarIndex index = new StudentColumnarIndex(studentRepository, mock(PlatformTransactionManager.class), true, deltaLimit);
+        index.seed();
+        return index;
+    }
+
+    @Test
+    public void testRangeQueriesOverSeededRows() {
+        StudentColumnarIndex index = index(100);
+
+        assertEquals(3, index.count(11, 12, null));
+        assertArrayEquals(new long[]{2L, 1L, 4L}, index.ids(11, 12, null));
+        assertArrayEquals(new long[]{2L, 4L}, index.ids(0, 100, 2L));
+        assertEquals(0, index.count(15, 20, null));
+    }
+
+    @Test
+    public void testChangesAreVisibleBeforeAndAfterMerge() {
+        for (int deltaLimit : new int[]{100, 0}) {
+            StudentColumnarIndex index = index(deltaLimit);
+
+            index.onStudentChanged(new StudentChangedEvent(new StudentSnapshot(1L, "A", 12, 1L), new StudentSnapshot(1L, "A", 15, 2L)));
+            index.onStudentChanged(StudentChangedEvent.deleted(new StudentSnapshot(2L, "B", 11, 2L)));
+            index.onStudentChanged(StudentChangedEvent.created(new StudentSnapshot(5L, "C", 12, null)));
+
+            assertArrayEquals(new long[]{4L, 5L}, index.ids(12, 12, null));
+            assertEquals(2, index.count(0, 100, 2L));
+            assertArrayEquals(new long[]{1L}, index.ids(15, 15, null));
+            assertEquals(0, index.count(11, 11, null));
+        }
+    }
+
+    @Test
+    public void testDeltaRowsKeepAgeThenIdOrder() {
+        StudentColumnarIndex index = index(100);
+
+        index.onStudentChanged(StudentChangedEvent.created(new StudentSnapshot(6L, "D", 11, 2L)));
+        index.onStudentChanged(new StudentChangedEvent(new StudentSnapshot(4L, "E", 12, 2L), new StudentSnapshot(4L, "E", 11, 2L)));
+
+        assertArrayEquals(new long[]{2L, 4L, 6L, 1L}, index.ids(11, 12, null));
+        assertEquals(4, index.count(11, 12, null));
+    }
+
+    @Test
+    public void testEventsDuringRefreshAreReplayed() {
+        StudentColumnarIndex index = index(100);
+        when(studentRepository.streamAgeRows()).thenAnswer(invocation -> {
+            index.onStudentChanged(StudentChangedEvent.created(new StudentSnapshot(7L, "F", 13, null)));
+            index.onStudentChanged(StudentChangedEvent.deleted(new StudentSnapshot(1L, "A", 12, 1L)));
+            return Stream.of(new StudentAgeRow(1L, 12, 1L), new StudentAgeRow(2L, 11, 2L));
+        });
+
+        index.refresh();
+
+        assertArrayEquals(new long[]{2L, 7L}, index.ids(0, 100, null));
+    }
+
+    @Test
+    public void testOpenEndedRangeDoesNotOverflow() {
+        StudentColumnarIndex index = index(100);
+
+        assertEquals(4, index.count(Integer.MIN_VALUE, Integer.MAX_VALUE, null));
+        assertArrayEquals(new long[]{2L, 1L, 4L, 3L}, index.ids(Integer.MIN_VALUE, Integer.MAX_VALUE, null));
+        assertEquals(1, index.count(13, Integer.MAX_VALUE, null));
+    }
+
+    @Test
+    public void testExtremeAgesInSnapshotAndMerge() {
+        when(studentRepository.streamAgeRows()).thenAnswer(invocation -> Stream.of(
+                new StudentAgeRow(1L, Integer.MAX_VALUE, null),
+                new StudentAgeRow(2L, 11, null),
+                new StudentAgeRow(3L, Integer.MIN_VALUE, null)));
+        StudentColumnarIndex index = index(0);
+
+        assertArrayEquals(new long[]{3L, 2L, 1L}, index.ids(Integer.MIN_VALUE, Integer.MAX_VALUE, null));
+
+        index.onStudentChanged(StudentChangedEvent.created(new StudentSnapshot(4L, "G", Integer.MAX_VALUE, null)));
+
+        assertArrayEquals(new long[]{1L, 4L}, index.ids(Integer.MAX_VALUE, Integer.MAX_VALUE, null));
+        assertEquals(4, index.count(Integer.MIN_VALUE, Integer.MAX_VALUE, null));
+    }
+
+    @Test
+    public void testDisabledIndexIsNotReady() {
+        StudentColumnarIndex index = new StudentColumnarIndex(studentRepository, mock(PlatformTransactionManager.class), false, 100);
+        index.seed();
+
+        assertFalse(index.isReady());
+        assertThrows(IllegalStateException.class, () -> index.count(0, 100, null));
+    }
+}
@@ -0,0 +1,46 @@
+package ru.hogwarts.school.stats;
+
+import org.junit.jupiter.api.Test;
+import ru.hogwarts.school.dto.AgeCount;
+import ru.hogwarts.school.event.StudentChangedEvent;
+import ru.hogwarts.school.event.StudentSnapshot;
+import ru.hogwarts.school.repository.StudentRepository;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class StudentStatisticsTest {
+
+    private final StudentRepository studentRepository = mock(StudentRepository.class);
+    private final StudentStatistics statistics = new StudentStatistics(studentRepository);
+
+    @Test
+    public void testEventsDuringReconcileAreNotLost() {
+        when(studentRepository.countByAge()).thenReturn(List.of(new AgeCount(11, 2L)));
+        statistics.seed();
+
+        when(studentRepository.countByAge()).thenAnswer(invocation -> {
+            statistics.onStudentChanged(StudentChangedEvent.created(new StudentSnapshot(3L, "Ron", 12, null)));
+            return List.of(new AgeCount(11, 2L));
+        });
+        statistics.reconcile();
+
+        assertEquals(3, statistics.count());
+        assertEquals(1L, statistics.snapshot().ageHistogram().get(12));
+    }
+
+    @Test
+    public void testFailedReconcileKeepsCounters() {
+        when(studentRepository.countByAge()).thenReturn(List.of(new AgeCount(11, 2L)));
+        statistics.seed();
+
+        when(studentRepository.countByAge()).thenThrow(new IllegalStateException("База недоступна"));
+        assertThrows(IllegalStateException.class, statistics::reconcile);
+        statistics.onStudentChanged(StudentChangedEvent.deleted(new StudentSnapshot(1L, "Harry", 11, null)));
+
+        assertEquals(1, statistics.count());
+    }
+}
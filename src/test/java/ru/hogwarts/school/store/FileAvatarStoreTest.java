@@ -0,0 +1,80 @@
+package ru.hogwarts.school.store;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.Resource;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FileAvatarStoreTest {
+
+    private static final String HASH = "abcd" + "0".repeat(60);
+
+    @TempDir
+    Path tempDir;
+
+    private Path source(String content) throws Exception {
+        Path file = Files.createTempFile(tempDir, "source-", ".tmp");
+        Files.writeString(file, content);
+        return file;
+    }
+
+    @Test
+    public void testSaveIntoShardedLayout() throws Exception {
+        FileAvatarStore store = new FileAvatarStore(tempDir.resolve("avatars"), 2);
+
+        store.save(HASH, source("avatar"));
+
+        Path expected = tempDir.resolve("avatars").resolve("ab").resolve("cd").resolve(HASH);
+        assertTrue(Files.exists(expected));
+        assertEquals(expected.toString(), store.location(HASH));
+        Resource resource = store.load(HASH).orElseThrow();
+        assertEquals("avatar", resource.getContentAsString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testLoadFallsBackToFlatLayout() throws Exception {
+        Path dir = tempDir.resolve("avatars");
+        new FileAvatarStore(dir, 0).save(HASH, source("flat"));
+        FileAvatarStore store = new FileAvatarStore(dir, 2);
+
+        assertTrue(store.contains(HASH));
+        assertTrue(store.load(HASH).isPresent());
+    }
+
+    @Test
+    public void testReshardMovesFilesIntoCurrentLayout() throws Exception {
+        Path dir = tempDir.resolve("avatars");
+        FileAvatarStore flat = new FileAvatarStore(dir, 0);
+        flat.save(HASH, source("one"));
+        flat.save(HASH + "-64", source("two"));
+        Files.writeString(dir.resolve("avatar-1.png"), "legacy");
+
+        FileAvatarStore store = new FileAvatarStore(dir, 2);
+        FileAvatarStore.ReshardReport report = store.reshard(2, Duration.ofMinutes(1));
+
+        assertEquals(2, report.moved());
+        assertEquals(0, report.failed());
+        assertTrue(Files.exists(dir.resolve("ab").resolve("cd").resolve(HASH)));
+        assertTrue(Files.exists(dir.resolve("ab").resolve("cd").resolve(HASH + "-64")));
+        assertFalse(Files.exists(dir.resolve(HASH)));
+        assertTrue(Files.exists(dir.resolve("avatar-1.png")));
+        assertEquals(0, store.reshard(2, Duration.ofMinutes(1)).moved());
+    }
+
+    @Test
+    public void testDeleteRemovesFileFromAnyLayout() throws Exception {
+        Path dir = tempDir.resolve("avatars");
+        new FileAvatarStore(dir, 1).save(HASH, source("avatar"));
+        FileAvatarStore store = new FileAvatarStore(dir, 2);
+
+        store.delete(HASH);
+
+        assertFalse(store.contains(HASH));
+    }
+}